@@ -64,6 +64,13 @@ android {
     }
 }
 
+// Export Room schemas so each database version is checked in and migrations can be reviewed
+kapt {
+    arguments {
+        arg("room.schemaLocation", "$projectDir/schemas")
+    }
+}
+
 dependencies {
 
     implementation("androidx.appcompat:appcompat:1.7.1")
@@ -75,6 +82,7 @@ dependencies {
     implementation("androidx.lifecycle:lifecycle-livedata:2.8.4")
     implementation("androidx.lifecycle:lifecycle-viewmodel:2.8.4")
     implementation("androidx.room:room-runtime:2.6.1")
+    implementation("androidx.paging:paging-runtime:3.3.2")
     kapt("androidx.room:room-compiler:2.6.1") // Use kapt for Room
     testImplementation("junit:junit:4.13.2")
     androidTestImplementation("androidx.test.ext:junit:1.3.0")
@@ -92,6 +100,7 @@ dependencies {
     
     // Additional performance optimizations
     implementation("androidx.lifecycle:lifecycle-runtime-ktx:2.8.4")
+    implementation("androidx.lifecycle:lifecycle-viewmodel-ktx:2.8.4")
     
     // SwipeRefreshLayout
     implementation("androidx.swiperefreshlayout:swiperefreshlayout:1.1.0")
@@ -103,8 +112,8 @@ dependencies {
     implementation("io.github.jan-tennert.supabase:gotrue-kt")
     implementation("io.github.jan-tennert.supabase:realtime-kt")
     
-    // Ktor client for Supabase
-    implementation("io.ktor:ktor-client-android:2.3.12")
+    // Ktor client for Supabase, on the app's shared OkHttpClient
+    implementation("io.ktor:ktor-client-okhttp:2.3.12")
     implementation("io.ktor:ktor-client-core:2.3.12")
     implementation("io.ktor:ktor-utils:2.3.12")
     
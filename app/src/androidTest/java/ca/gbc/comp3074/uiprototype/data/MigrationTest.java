@@ -0,0 +1,133 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Builds a version 3 database by hand (the last schema shipped before schemas were
+ * exported) and opens it through Room with every migration. Room validates each
+ * table against the entities on open, so a migration that drifts from the entity
+ * definitions fails here.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+
+    private Context context;
+    private QuietSpaceDatabase database;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migrate3ToLatest_keepsCachedPlaces() {
+        createVersion3Database();
+
+        PlaceDao dao = openMigrated().placeDao();
+
+        PlaceEntity library = dao.getPlaceWithDetailsByGoogleId("g-library");
+        assertNotNull(library);
+        assertEquals("Central Library", library.name);
+        assertEquals(4.5f, library.rating, 0.001f);
+        assertEquals(2, library.tags.size());
+        assertNotNull(library.details);
+        assertEquals("416-555-0100", library.details.phoneNumber);
+        assertEquals("photo-ref", library.details.photoReference);
+
+        List<PlaceEntity> hits = dao.search("centr", 10);
+        assertEquals(1, hits.size());
+        assertEquals("g-library", hits.get(0).googlePlaceId);
+    }
+
+    @Test
+    public void migrate3ToLatest_backfillsTagMask() {
+        createVersion3Database();
+
+        PlaceDao dao = openMigrated().placeDao();
+
+        int quietWifi = PlaceTags.bitOf(PlaceTags.QUIET) | PlaceTags.bitOf(PlaceTags.WIFI);
+        assertEquals(3, dao.getPlacesWithAllTags(quietWifi, 10).size());
+        // "WiFi" must not be read as part of "Free WiFi" or the other way round
+        assertTrue(dao.getPlacesWithAllTags(PlaceTags.bitOf(PlaceTags.FREE_WIFI), 10).isEmpty());
+    }
+
+    @Test
+    public void migrate3ToLatest_collapsesDuplicateGoogleIds() {
+        createVersion3Database();
+
+        PlaceDao dao = openMigrated().placeDao();
+
+        PlaceEntity cafe = dao.getPlaceWithDetailsByGoogleId("g-cafe");
+        assertNotNull(cafe);
+        // The favorited copy wins over the older plain one
+        assertTrue(cafe.favorite);
+        assertEquals(3, cafe.checkins);
+        assertEquals(3, dao.getAllPlacesSync().size());
+        assertNull(dao.getDetails(2));
+    }
+
+    private QuietSpaceDatabase openMigrated() {
+        database = Room.databaseBuilder(context, QuietSpaceDatabase.class, TEST_DB)
+                .addMigrations(QuietSpaceDatabase.MIGRATIONS)
+                .allowMainThreadQueries()
+                .build();
+        // Opening runs the migrations and schema validation
+        database.getOpenHelper().getWritableDatabase();
+        return database;
+    }
+
+    private void createVersion3Database() {
+        SQLiteDatabase db = context.openOrCreateDatabase(TEST_DB, Context.MODE_PRIVATE, null);
+        db.execSQL("CREATE TABLE IF NOT EXISTS `places` ("
+                + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `name` TEXT NOT NULL, "
+                + "`type` TEXT NOT NULL, `distance` TEXT NOT NULL, `rating` REAL NOT NULL, "
+                + "`reviewCount` INTEGER NOT NULL, `favorite` INTEGER NOT NULL, "
+                + "`checkins` INTEGER NOT NULL, `lastVisited` TEXT NOT NULL, `emoji` TEXT NOT NULL, "
+                + "`tags` TEXT NOT NULL, `latitude` REAL NOT NULL, `longitude` REAL NOT NULL, "
+                + "`address` TEXT, `description` TEXT, `phoneNumber` TEXT, `website` TEXT, "
+                + "`openingHours` TEXT, `googlePlaceId` TEXT, `priceLevel` TEXT, "
+                + "`isOpen` INTEGER NOT NULL, `quietScore` REAL NOT NULL, `photoReference` TEXT, "
+                + "`reviews` TEXT)");
+        insertVersion3Place(db, 1, "Central Library", "g-library", 4.5f, false, 0, "416-555-0100");
+        insertVersion3Place(db, 2, "Quiet Cafe", "g-cafe", 4.0f, false, 0, null);
+        insertVersion3Place(db, 3, "Quiet Cafe", "g-cafe", 4.1f, true, 3, null);
+        insertVersion3Place(db, 4, "Riverside Park", "g-park", 3.8f, false, 0, null);
+        db.setVersion(3);
+        db.close();
+    }
+
+    private static void insertVersion3Place(SQLiteDatabase db, int id, String name, String googlePlaceId,
+            float rating, boolean favorite, int checkins, String phone) {
+        db.execSQL("INSERT INTO `places` (`id`, `name`, `type`, `distance`, `rating`, `reviewCount`, "
+                + "`favorite`, `checkins`, `lastVisited`, `emoji`, `tags`, `latitude`, `longitude`, "
+                + "`address`, `description`, `phoneNumber`, `googlePlaceId`, `isOpen`, `quietScore`, "
+                + "`photoReference`) VALUES (?, ?, 'Library', '', ?, 10, ?, ?, '', '', 'Quiet|WiFi', "
+                + "43.65, -79.38, '1 Main St', 'Study space', ?, ?, 1, 4.0, 'photo-ref')",
+                new Object[] { id, name, rating, favorite ? 1 : 0, checkins, phone, googlePlaceId });
+    }
+}
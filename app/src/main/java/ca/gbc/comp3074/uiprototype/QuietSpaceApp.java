@@ -10,8 +10,11 @@ import androidx.appcompat.app.AppCompatDelegate;
 
 import com.google.android.libraries.places.api.Places;
 
-import java.util.concurrent.Executors;
-
+import ca.gbc.comp3074.uiprototype.api.HttpClientProvider;
+import ca.gbc.comp3074.uiprototype.api.NearbyTileCache;
+import ca.gbc.comp3074.uiprototype.api.QuotaManager;
+import ca.gbc.comp3074.uiprototype.data.AppExecutors;
+import ca.gbc.comp3074.uiprototype.data.PlaceMarkerIcons;
 import ca.gbc.comp3074.uiprototype.data.QuietSpaceDatabase;
 import ca.gbc.comp3074.uiprototype.utils.AppConfig;
 
@@ -24,11 +27,21 @@ public class QuietSpaceApp extends Application {
         // Apply saved theme (synchronous - needs to be immediate)
         applySavedTheme();
 
+        // Shared HTTP client with disk cache; cheap, the cache directory is opened lazily
+        HttpClientProvider.init(this);
+        // Nearby results per geohash tile; only resolves the directory, files are read on demand
+        NearbyTileCache.init(this);
+        // Daily request budget, read from preferences on first use
+        QuotaManager.init(this);
+
         // Initialize heavy operations on background thread for faster startup
-        Executors.newSingleThreadExecutor().execute(() -> {
+        AppExecutors.getInstance().background().execute(() -> {
             // Initialize Room database in background
             QuietSpaceDatabase.getInstance(this);
 
+            // Draw the map's category marker icons before the map first needs them
+            PlaceMarkerIcons.init(this);
+
             // Initialize Google Places API in background
             if (!Places.isInitialized()) {
                 Places.initialize(getApplicationContext(), AppConfig.GOOGLE_PLACES_API_KEY);
@@ -0,0 +1,120 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handle to a request started by one of the Google services. Cancelling it stops the
+ * request if nobody else is waiting on the same answer, skips parsing the response, and
+ * guarantees the callback is never called. Once the result has been delivered the handle
+ * is complete: it lets go of its cancel actions and lifecycle, and cancelling is a no-op.
+ */
+public final class CallHandle {
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+
+    // Run on cancel only
+    private final List<Runnable> cancelActions = new ArrayList<>(2);
+    // Run on cancel or completion, whichever comes first
+    private final List<Runnable> releaseActions = new ArrayList<>(1);
+    private boolean cancelled;
+    private boolean completed;
+
+    public void cancel() {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (cancelled || completed) {
+                return;
+            }
+            cancelled = true;
+            actions = new ArrayList<>(cancelActions);
+            actions.addAll(releaseActions);
+            cancelActions.clear();
+            releaseActions.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels this call when the owner is destroyed. Call on the main thread.
+     */
+    public CallHandle bindTo(LifecycleOwner owner) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            cancel();
+            return this;
+        }
+        LifecycleEventObserver observer = (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                cancel();
+            }
+        };
+        lifecycle.addObserver(observer);
+        // Observers may only be removed on the main thread, and not while they are dispatched
+        Runnable unbind = () -> MAIN.post(() -> lifecycle.removeObserver(observer));
+        synchronized (this) {
+            if (!cancelled && !completed) {
+                releaseActions.add(unbind);
+                return this;
+            }
+        }
+        unbind.run();
+        return this;
+    }
+
+    /**
+     * Marks the result as delivered: drops the cancel actions and unbinds from the
+     * lifecycle owner, so a long-lived owner does not collect finished calls
+     */
+    void complete() {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (cancelled || completed) {
+                return;
+            }
+            completed = true;
+            actions = new ArrayList<>(releaseActions);
+            cancelActions.clear();
+            releaseActions.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * Runs the action when the call is cancelled, or straight away if it already was.
+     * Ignored once the call is complete.
+     */
+    void onCancel(Runnable action) {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            if (!cancelled) {
+                cancelActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Forgets an action passed to {@link #onCancel} whose step has finished
+     */
+    synchronized void removeOnCancel(Runnable action) {
+        cancelActions.remove(action);
+    }
+}
@@ -0,0 +1,183 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Standard base32 geohash, used to snap search centers onto a fixed grid of tiles so
+ * that nearby requests made a few meters apart share a cache key.
+ */
+public final class GeoHash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    // Approximate cell size at the equator for precisions 1..9, in meters (width, height)
+    private static final double[][] CELL_SIZE_METERS = {
+            { 5_009_400, 4_992_600 },
+            { 1_252_300, 624_100 },
+            { 156_500, 156_000 },
+            { 39_100, 19_500 },
+            { 4_890, 4_890 },
+            { 1_220, 610 },
+            { 153, 153 },
+            { 38.2, 19.1 },
+            { 4.77, 4.77 },
+    };
+
+    public static final int MIN_PRECISION = 1;
+    public static final int MAX_PRECISION = CELL_SIZE_METERS.length;
+
+    private GeoHash() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int index = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    index = (index << 1) | 1;
+                    minLng = mid;
+                } else {
+                    index <<= 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    index = (index << 1) | 1;
+                    minLat = mid;
+                } else {
+                    index <<= 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash.append(BASE32[index]);
+                bit = 0;
+                index = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Bounds of a tile as { south, west, north, east }
+     */
+    public static double[] bounds(String hash) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        boolean evenBit = true;
+
+        for (int i = 0; i < hash.length(); i++) {
+            int index = indexOf(hash.charAt(i));
+            for (int bit = 4; bit >= 0; bit--) {
+                boolean set = ((index >> bit) & 1) == 1;
+                if (evenBit) {
+                    double mid = (minLng + maxLng) / 2;
+                    if (set) {
+                        minLng = mid;
+                    } else {
+                        maxLng = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (set) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[] { minLat, minLng, maxLat, maxLng };
+    }
+
+    /**
+     * Center of a tile as { latitude, longitude }
+     */
+    public static double[] center(String hash) {
+        double[] b = bounds(hash);
+        return new double[] { (b[0] + b[2]) / 2, (b[1] + b[3]) / 2 };
+    }
+
+    /**
+     * The coarsest precision whose tiles are no larger than the given size. Searching from
+     * a tile center instead of the exact point then moves the circle by at most about
+     * 0.7 of that size.
+     */
+    public static int precisionForCellSize(double maxCellMeters) {
+        for (int precision = MIN_PRECISION; precision <= MAX_PRECISION; precision++) {
+            double[] size = CELL_SIZE_METERS[precision - 1];
+            if (Math.max(size[0], size[1]) <= maxCellMeters) {
+                return precision;
+            }
+        }
+        return MAX_PRECISION;
+    }
+
+    /**
+     * Half the diagonal of a tile at the equator: a search circle of this radius around
+     * the tile center covers the whole tile
+     */
+    public static double cellRadiusMeters(int precision) {
+        double[] size = CELL_SIZE_METERS[precision - 1];
+        return Math.hypot(size[0], size[1]) / 2;
+    }
+
+    /**
+     * Tiles of the given precision covering a box, or null if that takes more than
+     * maxCells tiles. The box may cross the antimeridian (east less than west).
+     */
+    public static List<String> cover(double south, double west, double north, double east, int precision,
+            int maxCells) {
+        // Tiles split longitude first, so it gets the extra bit on odd bit counts
+        int bits = precision * 5;
+        double cellLng = 360 / Math.pow(2, (bits + 1) / 2);
+        double cellLat = 180 / Math.pow(2, bits / 2);
+        if (east < west) {
+            east += 360;
+        }
+        north = Math.min(north, 90 - cellLat / 2);
+        south = Math.max(south, -90);
+
+        long firstRow = (long) Math.floor((south + 90) / cellLat);
+        long lastRow = (long) Math.floor((north + 90) / cellLat);
+        long firstCol = (long) Math.floor((west + 180) / cellLng);
+        long lastCol = (long) Math.floor((east + 180) / cellLng);
+        if ((lastRow - firstRow + 1) * (lastCol - firstCol + 1) > maxCells) {
+            return null;
+        }
+
+        List<String> cells = new ArrayList<>();
+        for (long row = firstRow; row <= lastRow; row++) {
+            double latitude = -90 + (row + 0.5) * cellLat;
+            for (long col = firstCol; col <= lastCol; col++) {
+                double longitude = -180 + (col + 0.5) * cellLng;
+                if (longitude >= 180) {
+                    longitude -= 360;
+                }
+                cells.add(encode(latitude, longitude, precision));
+            }
+        }
+        return cells;
+    }
+
+    private static int indexOf(char c) {
+        for (int i = 0; i < BASE32.length; i++) {
+            if (BASE32[i] == c) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Invalid geohash character: " + c);
+    }
+}
@@ -0,0 +1,226 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.gson.TypeAdapter;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import ca.gbc.comp3074.uiprototype.data.AppExecutors;
+
+/**
+ * Sends one Google web service request through the {@link QuotaManager} and retries
+ * transient failures: network errors, HTTP 5xx and 429, and the OVER_QUERY_LIMIT and
+ * UNKNOWN_ERROR statuses. Retries back off exponentially with full jitter, so clients
+ * that failed together do not come back together. Once the handle is cancelled nothing
+ * more is sent or parsed, and the listener is not called.
+ *
+ * A deadline bounds the whole call, retries and time queued for quota included: each
+ * attempt only gets the time that is left, and no retry starts once it has passed.
+ */
+final class GoogleApiRequest {
+    private static final String TAG = "GoogleApiRequest";
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BACKOFF_BASE_MS = 500;
+    private static final long BACKOFF_CAP_MS = 8000;
+
+    /**
+     * Reads the status field of a decoded response
+     */
+    interface Status<T> {
+        String of(T response);
+    }
+
+    private GoogleApiRequest() {
+    }
+
+    /**
+     * Delivers the decoded response once it is not worth retrying; callers decide which
+     * statuses count as answers
+     *
+     * @param deadlineMs {@link #deadlineIn} time by which the call must be answered, or 0
+     *                   for the client defaults and no overall limit
+     */
+    static <T> void enqueue(OkHttpClient client, Request request, long deadlineMs, String endpoint, int priority,
+            CallHandle handle, TypeAdapter<T> adapter, Status<T> status, SingleFlight.Listener<T> listener) {
+        attempt(client, request, deadlineMs, endpoint, priority, handle, adapter, status, listener, 1);
+    }
+
+    /**
+     * A deadline this many milliseconds from now
+     */
+    static long deadlineIn(long timeoutMs) {
+        return SystemClock.elapsedRealtime() + timeoutMs;
+    }
+
+    /**
+     * Milliseconds left before the deadline, or Long.MAX_VALUE without one
+     */
+    private static long remainingMillis(long deadlineMs) {
+        return deadlineMs > 0 ? deadlineMs - SystemClock.elapsedRealtime() : Long.MAX_VALUE;
+    }
+
+    private static <T> void attempt(OkHttpClient client, Request request, long deadlineMs, String endpoint,
+            int priority, CallHandle handle, TypeAdapter<T> adapter, Status<T> status,
+            SingleFlight.Listener<T> listener, int attempt) {
+        if (handle.isCancelled()) {
+            return;
+        }
+        if (remainingMillis(deadlineMs) <= 0) {
+            listener.onError("Deadline exceeded for " + endpoint);
+            return;
+        }
+        // Undo actions of this attempt; each is dropped from the handle once its step is over,
+        // so retries do not pile them up
+        final Runnable[] withdraw = new Runnable[1];
+        // Wakes up to stop waiting for quota at the deadline; cancelled once the wait is over
+        final ScheduledFuture<?>[] quotaDeadline = new ScheduledFuture<?>[1];
+        QuotaManager.Permit permit = new QuotaManager.Permit() {
+            @Override
+            public void granted() {
+                handle.removeOnCancel(withdraw[0]);
+                cancel(quotaDeadline[0]);
+                if (handle.isCancelled()) {
+                    return;
+                }
+                long remaining = remainingMillis(deadlineMs);
+                if (remaining <= 0) {
+                    listener.onError("Deadline exceeded for " + endpoint + " while waiting for quota");
+                    return;
+                }
+                Call call = client.newCall(request);
+                if (deadlineMs > 0) {
+                    call.timeout().timeout(remaining, TimeUnit.MILLISECONDS);
+                }
+                Runnable cancelCall = call::cancel;
+                handle.onCancel(cancelCall);
+                call.enqueue(new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        handle.removeOnCancel(cancelCall);
+                        if (handle.isCancelled()) {
+                            return;
+                        }
+                        if (!call.isCanceled() && retry(attempt, "network error")) {
+                            return;
+                        }
+                        Log.e(TAG, "Network error: " + e.getMessage());
+                        listener.onError("Network error: " + e.getMessage());
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        handle.removeOnCancel(cancelCall);
+                        if (handle.isCancelled()) {
+                            // Nobody is waiting for it, so skip the parse
+                            response.close();
+                            return;
+                        }
+                        if (!response.isSuccessful()) {
+                            // Release the pooled connection; successful bodies are closed by decode
+                            response.close();
+                            int code = response.code();
+                            if ((code >= 500 || code == 429) && retry(attempt, "HTTP " + code)) {
+                                return;
+                            }
+                            listener.onError("HTTP error: " + code);
+                            return;
+                        }
+
+                        T decoded;
+                        try {
+                            decoded = GoogleJsonAdapters.decode(response.body(), adapter);
+                        } catch (Exception e) {
+                            if (handle.isCancelled()) {
+                                return;
+                            }
+                            Log.e(TAG, "Parse error: " + e.getMessage());
+                            listener.onError("Parse error: " + e.getMessage());
+                            return;
+                        }
+                        String apiStatus = status.of(decoded);
+                        if ("OVER_QUERY_LIMIT".equals(apiStatus)) {
+                            QuotaManager.get().reportOverQueryLimit(endpoint);
+                        }
+                        if (("OVER_QUERY_LIMIT".equals(apiStatus) || "UNKNOWN_ERROR".equals(apiStatus))
+                                && retry(attempt, apiStatus)) {
+                            return;
+                        }
+                        if (!handle.isCancelled()) {
+                            listener.onSuccess(decoded);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void denied(String reason) {
+                handle.removeOnCancel(withdraw[0]);
+                cancel(quotaDeadline[0]);
+                if (!handle.isCancelled()) {
+                    listener.onError(reason);
+                }
+            }
+
+            private boolean retry(int attempt, String reason) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    return false;
+                }
+                long delayMs = backoffMillis(attempt);
+                if (delayMs >= remainingMillis(deadlineMs)) {
+                    // The retry could not be answered in time
+                    return false;
+                }
+                Log.d(TAG, endpoint + " " + reason + ", retrying in " + delayMs + " ms");
+                // A retry must reach Google, never a stored copy of the answer being retried
+                Request retry = request.newBuilder().cacheControl(CacheControl.FORCE_NETWORK).build();
+                AppExecutors.getInstance().scheduled().schedule(
+                        () -> GoogleApiRequest.attempt(client, retry, deadlineMs, endpoint, priority, handle,
+                                adapter, status, listener, attempt + 1),
+                        delayMs, TimeUnit.MILLISECONDS);
+                return true;
+            }
+        };
+        // A call cancelled while queued gives its place back
+        withdraw[0] = () -> {
+            QuotaManager.get().withdraw(endpoint, permit);
+            cancel(quotaDeadline[0]);
+        };
+        handle.onCancel(withdraw[0]);
+        if (deadlineMs > 0) {
+            // Stop waiting for quota once the deadline passes
+            quotaDeadline[0] = AppExecutors.getInstance().scheduled().schedule(() -> {
+                if (QuotaManager.get().withdraw(endpoint, permit) && !handle.isCancelled()) {
+                    listener.onError("Deadline exceeded for " + endpoint + " while waiting for quota");
+                }
+            }, remainingMillis(deadlineMs), TimeUnit.MILLISECONDS);
+        }
+        QuotaManager.get().acquire(endpoint, priority, permit);
+    }
+
+    private static void cancel(ScheduledFuture<?> task) {
+        // Null when the call has no deadline
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Full jitter: a uniform delay up to the capped exponential step for this attempt
+     */
+    private static long backoffMillis(int attempt) {
+        long step = Math.min(BACKOFF_CAP_MS, BACKOFF_BASE_MS << (attempt - 1));
+        return ThreadLocalRandom.current().nextLong(step + 1);
+    }
+}
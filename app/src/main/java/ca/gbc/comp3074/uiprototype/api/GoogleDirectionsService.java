@@ -1,53 +1,102 @@
 package ca.gbc.comp3074.uiprototype.api;
 
-import android.util.Log;
+import android.util.LruCache;
 
-import com.google.gson.Gson;
 import com.google.gson.annotations.SerializedName;
 
-import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
-import okhttp3.Call;
-import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.Response;
+import ca.gbc.comp3074.uiprototype.data.AppExecutors;
 import ca.gbc.comp3074.uiprototype.utils.AppConfig;
 
 public class GoogleDirectionsService {
     private static final String TAG = "GoogleDirectionsService";
     private static final String BASE_URL = "https://maps.googleapis.com/maps/api/directions/json";
 
+    // Quiet spaces are usually close by, so routes are for walking
+    private static final String TRAVEL_MODE = "walking";
+    // Origin and destination are snapped to geohash cells of about 38 x 19 m, so a
+    // re-route from roughly the same spot to the same place is served from the cache
+    private static final int ROUTE_KEY_PRECISION = 8;
+    private static final int MAX_CACHED_ROUTES = 16;
+
+    // Shared by every service instance; identical route requests in flight go out once
+    private static final SingleFlight<List<Route>> FLIGHTS = new SingleFlight<>();
+    private static final LruCache<String, CachedRoutes> CACHE = new LruCache<>(MAX_CACHED_ROUTES);
+
+    private static final class CachedRoutes {
+        final List<Route> routes;
+        final long fetchedAt;
+
+        CachedRoutes(List<Route> routes, long fetchedAt) {
+            this.routes = routes;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
     private final OkHttpClient httpClient;
-    private final Gson gson;
 
     public GoogleDirectionsService() {
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
-        this.gson = new Gson();
+        // Shared client: one connection pool, dispatcher and disk cache for the app
+        this.httpClient = HttpClientProvider.get();
     }
 
+    /**
+     * Called on a background thread. Routes come with their geometry decoded; the list is
+     * shared with the cache and must not be modified.
+     */
     public interface DirectionsCallback {
         void onSuccess(List<Route> routes);
 
         void onError(String error);
     }
 
-    public void getDirections(double originLat, double originLng, double destLat, double destLng,
+    public CallHandle getDirections(double originLat, double originLng, double destLat, double destLng,
             DirectionsCallback callback) {
+        CallHandle handle = new CallHandle();
+        String key = routeKey(originLat, originLng, destLat, destLng);
+        CachedRoutes cached = CACHE.get(key);
+        if (cached != null && System.currentTimeMillis() - cached.fetchedAt < AppConfig.DIRECTIONS_CACHE_TTL_MS) {
+            AppExecutors.getInstance().background().execute(() -> {
+                if (!handle.isCancelled()) {
+                    handle.complete();
+                    callback.onSuccess(cached.routes);
+                }
+            });
+            return handle;
+        }
+
+        FLIGHTS.run(key, handle, new SingleFlight.Listener<List<Route>>() {
+            @Override
+            public void onSuccess(List<Route> routes) {
+                handle.complete();
+                callback.onSuccess(routes);
+            }
+
+            @Override
+            public void onError(String error) {
+                handle.complete();
+                callback.onError(error);
+            }
+        }, (flight, done) -> fetchDirections(key, originLat, originLng, destLat, destLng, flight, done));
+        return handle;
+    }
+
+    private static String routeKey(double originLat, double originLng, double destLat, double destLng) {
+        return GeoHash.encode(originLat, originLng, ROUTE_KEY_PRECISION) + ">"
+                + GeoHash.encode(destLat, destLng, ROUTE_KEY_PRECISION) + "/" + TRAVEL_MODE;
+    }
+
+    private void fetchDirections(String key, double originLat, double originLng, double destLat, double destLng,
+            CallHandle flight, SingleFlight.Listener<List<Route>> callback) {
         String url = BASE_URL + "?" +
                 "origin=" + originLat + "," + originLng +
                 "&destination=" + destLat + "," + destLng +
                 "&alternatives=true" +
-                "&mode=walking" + // Default to walking for quiet spaces, or driving? User didn't specify, but
-                                  // walking makes sense for "nearby". Let's stick to default (driving) or make it
-                                  // configurable. Let's use driving for "fastest" usually implies driving, but
-                                  // for campus/quiet spaces walking might be better. Let's use driving as default
-                                  // for "fastest direction".
+                "&mode=" + TRAVEL_MODE +
                 "&key=" + AppConfig.GOOGLE_PLACES_API_KEY;
 
         Request request = new Request.Builder()
@@ -55,35 +104,32 @@ public class GoogleDirectionsService {
                 .get()
                 .build();
 
-        httpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                Log.e(TAG, "Network error: " + e.getMessage());
-                callback.onError("Network error: " + e.getMessage());
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (!response.isSuccessful()) {
-                    callback.onError("HTTP error: " + response.code());
-                    return;
-                }
-
-                try {
-                    String responseBody = response.body().string();
-                    DirectionsResponse directionsResponse = gson.fromJson(responseBody, DirectionsResponse.class);
+        GoogleApiRequest.enqueue(httpClient, request, 0, QuotaManager.DIRECTIONS, QuotaManager.PRIORITY_USER, flight,
+                GoogleJsonAdapters.DIRECTIONS_RESPONSE, response -> response.status,
+                new SingleFlight.Listener<DirectionsResponse>() {
+                    @Override
+                    public void onSuccess(DirectionsResponse directionsResponse) {
+                        if ("OK".equals(directionsResponse.status)) {
+                            List<Route> routes = directionsResponse.routes != null
+                                    ? directionsResponse.routes : Collections.emptyList();
+                            // Still on the network thread, so drawing later needs no decoding
+                            for (Route route : routes) {
+                                route.geometry = RouteGeometry.decode(
+                                        route.overviewPolyline != null ? route.overviewPolyline.points : null);
+                            }
+                            routes = Collections.unmodifiableList(routes);
+                            CACHE.put(key, new CachedRoutes(routes, System.currentTimeMillis()));
+                            callback.onSuccess(routes);
+                        } else {
+                            callback.onError("API error: " + directionsResponse.status);
+                        }
+                    }
 
-                    if ("OK".equals(directionsResponse.status)) {
-                        callback.onSuccess(directionsResponse.routes);
-                    } else {
-                        callback.onError("API error: " + directionsResponse.status);
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "Parse error: " + e.getMessage());
-                    callback.onError("Parse error: " + e.getMessage());
-                }
-            }
-        });
+                });
     }
 
     public static class DirectionsResponse {
@@ -96,6 +142,8 @@ public class GoogleDirectionsService {
         public List<Leg> legs;
         @SerializedName("overview_polyline")
         public Polyline overviewPolyline;
+        // Decoded overview polyline, filled in by the service; null if there is none
+        public transient RouteGeometry geometry;
     }
 
     public static class Leg {
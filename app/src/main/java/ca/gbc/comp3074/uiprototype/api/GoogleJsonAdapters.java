@@ -0,0 +1,779 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.gbc.comp3074.uiprototype.api.GoogleDirectionsService.DirectionsResponse;
+import ca.gbc.comp3074.uiprototype.api.GoogleDirectionsService.Distance;
+import ca.gbc.comp3074.uiprototype.api.GoogleDirectionsService.Duration;
+import ca.gbc.comp3074.uiprototype.api.GoogleDirectionsService.Leg;
+import ca.gbc.comp3074.uiprototype.api.GoogleDirectionsService.Polyline;
+import ca.gbc.comp3074.uiprototype.api.GoogleDirectionsService.Route;
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService.GooglePlace;
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService.GooglePlaceDetails;
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService.PlaceDetailsResponse;
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService.PlacesResponse;
+import okhttp3.ResponseBody;
+
+/**
+ * Hand-written streaming adapters for the Google Places and Directions responses.
+ * They read straight from the response stream with a JsonReader, so the body is never
+ * buffered into a String and no reflection runs per field. Unknown fields are skipped.
+ *
+ * The write side emits the same field names the read side expects, so anything written
+ * with an adapter (such as the nearby tile cache) reads back with it unchanged.
+ */
+public final class GoogleJsonAdapters {
+
+    public static final TypeAdapter<PlacesResponse> PLACES_RESPONSE = new TypeAdapter<PlacesResponse>() {
+        @Override
+        public void write(JsonWriter out, PlacesResponse response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("results");
+            writeList(out, response.results, GoogleJsonAdapters::writePlace);
+            out.name("status").value(response.status);
+            out.name("next_page_token").value(response.nextPageToken);
+            out.endObject();
+        }
+
+        @Override
+        public PlacesResponse read(JsonReader in) throws IOException {
+            PlacesResponse response = new PlacesResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "results":
+                        response.results = readList(in, GoogleJsonAdapters::readPlace);
+                        break;
+                    case "status":
+                        response.status = nextStringOrNull(in);
+                        break;
+                    case "next_page_token":
+                        response.nextPageToken = nextStringOrNull(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    };
+
+    public static final TypeAdapter<PlaceDetailsResponse> PLACE_DETAILS_RESPONSE =
+            new TypeAdapter<PlaceDetailsResponse>() {
+                @Override
+                public void write(JsonWriter out, PlaceDetailsResponse response) throws IOException {
+                    if (response == null) {
+                        out.nullValue();
+                        return;
+                    }
+                    out.beginObject();
+                    out.name("result");
+                    writePlaceDetails(out, response.result);
+                    out.name("status").value(response.status);
+                    out.endObject();
+                }
+
+                @Override
+                public PlaceDetailsResponse read(JsonReader in) throws IOException {
+                    PlaceDetailsResponse response = new PlaceDetailsResponse();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "result":
+                                response.result = readPlaceDetails(in);
+                                break;
+                            case "status":
+                                response.status = nextStringOrNull(in);
+                                break;
+                            default:
+                                in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    return response;
+                }
+            };
+
+    public static final TypeAdapter<DirectionsResponse> DIRECTIONS_RESPONSE =
+            new TypeAdapter<DirectionsResponse>() {
+                @Override
+                public void write(JsonWriter out, DirectionsResponse response) throws IOException {
+                    if (response == null) {
+                        out.nullValue();
+                        return;
+                    }
+                    out.beginObject();
+                    out.name("routes");
+                    writeList(out, response.routes, GoogleJsonAdapters::writeRoute);
+                    out.name("status").value(response.status);
+                    out.endObject();
+                }
+
+                @Override
+                public DirectionsResponse read(JsonReader in) throws IOException {
+                    DirectionsResponse response = new DirectionsResponse();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "routes":
+                                response.routes = readList(in, GoogleJsonAdapters::readRoute);
+                                break;
+                            case "status":
+                                response.status = nextStringOrNull(in);
+                                break;
+                            default:
+                                in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    return response;
+                }
+            };
+
+    private GoogleJsonAdapters() {
+    }
+
+    /**
+     * Decode a response body with the given adapter, streaming from the body's charset
+     * decoder. Closes the body.
+     */
+    public static <T> T decode(ResponseBody body, TypeAdapter<T> adapter) throws IOException {
+        try (ResponseBody closing = body) {
+            return decode(closing.charStream(), adapter);
+        }
+    }
+
+    public static <T> T decode(Reader source, TypeAdapter<T> adapter) throws IOException {
+        JsonReader reader = new JsonReader(source);
+        T value = adapter.read(reader);
+        if (value == null) {
+            throw new IOException("Empty response");
+        }
+        return value;
+    }
+
+    /**
+     * Encode a value with the given adapter. Null fields are left out, as the readers
+     * treat a missing field and a null one alike. Does not close the target.
+     */
+    public static <T> void encode(Writer target, TypeAdapter<T> adapter, T value) throws IOException {
+        JsonWriter writer = new JsonWriter(target);
+        writer.setSerializeNulls(false);
+        adapter.write(writer, value);
+        writer.flush();
+    }
+
+    // ---- Places ----
+
+    static GooglePlace readPlace(JsonReader in) throws IOException {
+        GooglePlace place = new GooglePlace();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "place_id":
+                    place.placeId = nextStringOrNull(in);
+                    break;
+                case "name":
+                    place.name = nextStringOrNull(in);
+                    break;
+                case "geometry":
+                    place.geometry = readGeometry(in);
+                    break;
+                case "rating":
+                    place.rating = (float) nextDoubleOrZero(in);
+                    break;
+                case "user_ratings_total":
+                    place.userRatingsTotal = nextIntOrZero(in);
+                    break;
+                case "vicinity":
+                    place.vicinity = nextStringOrNull(in);
+                    break;
+                case "types":
+                    place.types = readList(in, GoogleJsonAdapters::nextStringOrNull);
+                    break;
+                case "price_level":
+                    place.priceLevel = nextIntegerOrNull(in);
+                    break;
+                case "photos":
+                    place.photos = readList(in, GoogleJsonAdapters::readPhoto);
+                    break;
+                case "opening_hours":
+                    place.openingHours = readOpeningHours(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return place;
+    }
+
+    static GooglePlaceDetails readPlaceDetails(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        GooglePlaceDetails details = new GooglePlaceDetails();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "place_id":
+                    details.placeId = nextStringOrNull(in);
+                    break;
+                case "name":
+                    details.name = nextStringOrNull(in);
+                    break;
+                case "formatted_address":
+                    details.formattedAddress = nextStringOrNull(in);
+                    break;
+                case "formatted_phone_number":
+                    details.formattedPhoneNumber = nextStringOrNull(in);
+                    break;
+                case "rating":
+                    details.rating = (float) nextDoubleOrZero(in);
+                    break;
+                case "user_ratings_total":
+                    details.userRatingsTotal = nextIntOrZero(in);
+                    break;
+                case "price_level":
+                    details.priceLevel = nextIntegerOrNull(in);
+                    break;
+                case "reviews":
+                    details.reviews = readList(in, GoogleJsonAdapters::readReview);
+                    break;
+                case "photos":
+                    details.photos = readList(in, GoogleJsonAdapters::readPhoto);
+                    break;
+                case "geometry":
+                    details.geometry = readGeometry(in);
+                    break;
+                case "opening_hours":
+                    details.openingHours = readDetailedOpeningHours(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return details;
+    }
+
+    private static GooglePlace.Geometry readGeometry(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        GooglePlace.Geometry geometry = new GooglePlace.Geometry();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("location".equals(in.nextName()) && in.peek() != JsonToken.NULL) {
+                GooglePlace.Geometry.Location location = new GooglePlace.Geometry.Location();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "lat":
+                            location.lat = nextDoubleOrZero(in);
+                            break;
+                        case "lng":
+                            location.lng = nextDoubleOrZero(in);
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+                geometry.location = location;
+            } else {
+                // viewport, or a null location
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return geometry;
+    }
+
+    private static GooglePlace.Photo readPhoto(JsonReader in) throws IOException {
+        GooglePlace.Photo photo = new GooglePlace.Photo();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "photo_reference":
+                    photo.photoReference = nextStringOrNull(in);
+                    break;
+                case "height":
+                    photo.height = nextIntOrZero(in);
+                    break;
+                case "width":
+                    photo.width = nextIntOrZero(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return photo;
+    }
+
+    private static GooglePlace.OpeningHours readOpeningHours(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        GooglePlace.OpeningHours hours = new GooglePlace.OpeningHours();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("open_now".equals(in.nextName())) {
+                hours.openNow = nextBooleanOrFalse(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return hours;
+    }
+
+    private static GooglePlaceDetails.DetailedOpeningHours readDetailedOpeningHours(JsonReader in)
+            throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        GooglePlaceDetails.DetailedOpeningHours hours = new GooglePlaceDetails.DetailedOpeningHours();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "open_now":
+                    hours.openNow = nextBooleanOrFalse(in);
+                    break;
+                case "periods":
+                    hours.periods = readList(in, GoogleJsonAdapters::readPeriod);
+                    break;
+                case "weekday_text":
+                    hours.weekdayText = readList(in, GoogleJsonAdapters::nextStringOrNull);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return hours;
+    }
+
+    private static GooglePlaceDetails.DetailedOpeningHours.Period readPeriod(JsonReader in) throws IOException {
+        GooglePlaceDetails.DetailedOpeningHours.Period period = new GooglePlaceDetails.DetailedOpeningHours.Period();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "open":
+                    period.open = readTimeInfo(in);
+                    break;
+                case "close":
+                    period.close = readTimeInfo(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return period;
+    }
+
+    private static GooglePlaceDetails.DetailedOpeningHours.Period.TimeInfo readTimeInfo(JsonReader in)
+            throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        GooglePlaceDetails.DetailedOpeningHours.Period.TimeInfo time =
+                new GooglePlaceDetails.DetailedOpeningHours.Period.TimeInfo();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "day":
+                    time.day = nextIntOrZero(in);
+                    break;
+                case "time":
+                    time.time = nextStringOrNull(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return time;
+    }
+
+    private static GooglePlaceDetails.Review readReview(JsonReader in) throws IOException {
+        GooglePlaceDetails.Review review = new GooglePlaceDetails.Review();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "author_name":
+                    review.authorName = nextStringOrNull(in);
+                    break;
+                case "author_url":
+                    review.authorUrl = nextStringOrNull(in);
+                    break;
+                case "language":
+                    review.language = nextStringOrNull(in);
+                    break;
+                case "profile_photo_url":
+                    review.profilePhotoUrl = nextStringOrNull(in);
+                    break;
+                case "rating":
+                    review.rating = nextIntOrZero(in);
+                    break;
+                case "relative_time_description":
+                    review.relativeTimeDescription = nextStringOrNull(in);
+                    break;
+                case "text":
+                    review.text = nextStringOrNull(in);
+                    break;
+                case "time":
+                    review.time = in.peek() == JsonToken.NULL ? skipNull(in, 0L) : in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return review;
+    }
+
+    // ---- Directions ----
+
+    static Route readRoute(JsonReader in) throws IOException {
+        Route route = new Route();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "summary":
+                    route.summary = nextStringOrNull(in);
+                    break;
+                case "legs":
+                    route.legs = readList(in, GoogleJsonAdapters::readLeg);
+                    break;
+                case "overview_polyline":
+                    route.overviewPolyline = readPolyline(in);
+                    break;
+                default:
+                    // steps, bounds, warnings... are not used by the app
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return route;
+    }
+
+    private static Leg readLeg(JsonReader in) throws IOException {
+        Leg leg = new Leg();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "distance":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        Distance distance = new Distance();
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String name = in.nextName();
+                            if ("text".equals(name)) {
+                                distance.text = nextStringOrNull(in);
+                            } else if ("value".equals(name)) {
+                                distance.value = nextIntOrZero(in);
+                            } else {
+                                in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                        leg.distance = distance;
+                    }
+                    break;
+                case "duration":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        Duration duration = new Duration();
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String name = in.nextName();
+                            if ("text".equals(name)) {
+                                duration.text = nextStringOrNull(in);
+                            } else if ("value".equals(name)) {
+                                duration.value = nextIntOrZero(in);
+                            } else {
+                                in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                        leg.duration = duration;
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return leg;
+    }
+
+    private static Polyline readPolyline(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Polyline polyline = new Polyline();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("points".equals(in.nextName())) {
+                polyline.points = nextStringOrNull(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return polyline;
+    }
+
+    // ---- Primitives ----
+
+    interface ElementReader<T> {
+        T read(JsonReader in) throws IOException;
+    }
+
+    private static <T> List<T> readList(JsonReader in, ElementReader<T> element) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<T> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(element.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        return in.peek() == JsonToken.NULL ? skipNull(in, null) : in.nextString();
+    }
+
+    private static double nextDoubleOrZero(JsonReader in) throws IOException {
+        return in.peek() == JsonToken.NULL ? skipNull(in, 0d) : in.nextDouble();
+    }
+
+    private static int nextIntOrZero(JsonReader in) throws IOException {
+        return in.peek() == JsonToken.NULL ? skipNull(in, 0) : in.nextInt();
+    }
+
+    private static Integer nextIntegerOrNull(JsonReader in) throws IOException {
+        return in.peek() == JsonToken.NULL ? skipNull(in, null) : Integer.valueOf(in.nextInt());
+    }
+
+    private static boolean nextBooleanOrFalse(JsonReader in) throws IOException {
+        return in.peek() == JsonToken.NULL ? skipNull(in, false) : in.nextBoolean();
+    }
+
+    private static <T> T skipNull(JsonReader in, T fallback) throws IOException {
+        in.nextNull();
+        return fallback;
+    }
+
+    // ---- Writers, mirroring the readers above ----
+
+    static void writePlace(JsonWriter out, GooglePlace place) throws IOException {
+        out.beginObject();
+        out.name("place_id").value(place.placeId);
+        out.name("name").value(place.name);
+        out.name("geometry");
+        writeGeometry(out, place.geometry);
+        out.name("rating").value(place.rating);
+        out.name("user_ratings_total").value(place.userRatingsTotal);
+        out.name("vicinity").value(place.vicinity);
+        out.name("types");
+        writeList(out, place.types, JsonWriter::value);
+        out.name("price_level").value(place.priceLevel);
+        out.name("photos");
+        writeList(out, place.photos, GoogleJsonAdapters::writePhoto);
+        out.name("opening_hours");
+        if (place.openingHours == null) {
+            out.nullValue();
+        } else {
+            out.beginObject();
+            out.name("open_now").value(place.openingHours.openNow);
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    static void writePlaceDetails(JsonWriter out, GooglePlaceDetails details) throws IOException {
+        if (details == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("place_id").value(details.placeId);
+        out.name("name").value(details.name);
+        out.name("formatted_address").value(details.formattedAddress);
+        out.name("formatted_phone_number").value(details.formattedPhoneNumber);
+        out.name("rating").value(details.rating);
+        out.name("user_ratings_total").value(details.userRatingsTotal);
+        out.name("price_level").value(details.priceLevel);
+        out.name("reviews");
+        writeList(out, details.reviews, GoogleJsonAdapters::writeReview);
+        out.name("photos");
+        writeList(out, details.photos, GoogleJsonAdapters::writePhoto);
+        out.name("geometry");
+        writeGeometry(out, details.geometry);
+        out.name("opening_hours");
+        writeDetailedOpeningHours(out, details.openingHours);
+        out.endObject();
+    }
+
+    private static void writeGeometry(JsonWriter out, GooglePlace.Geometry geometry) throws IOException {
+        if (geometry == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("location");
+        if (geometry.location == null) {
+            out.nullValue();
+        } else {
+            out.beginObject();
+            out.name("lat").value(geometry.location.lat);
+            out.name("lng").value(geometry.location.lng);
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    private static void writePhoto(JsonWriter out, GooglePlace.Photo photo) throws IOException {
+        out.beginObject();
+        out.name("photo_reference").value(photo.photoReference);
+        out.name("height").value(photo.height);
+        out.name("width").value(photo.width);
+        out.endObject();
+    }
+
+    private static void writeDetailedOpeningHours(JsonWriter out, GooglePlaceDetails.DetailedOpeningHours hours)
+            throws IOException {
+        if (hours == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("open_now").value(hours.openNow);
+        out.name("periods");
+        writeList(out, hours.periods, GoogleJsonAdapters::writePeriod);
+        out.name("weekday_text");
+        writeList(out, hours.weekdayText, JsonWriter::value);
+        out.endObject();
+    }
+
+    private static void writePeriod(JsonWriter out, GooglePlaceDetails.DetailedOpeningHours.Period period)
+            throws IOException {
+        out.beginObject();
+        out.name("open");
+        writeTimeInfo(out, period.open);
+        out.name("close");
+        writeTimeInfo(out, period.close);
+        out.endObject();
+    }
+
+    private static void writeTimeInfo(JsonWriter out, GooglePlaceDetails.DetailedOpeningHours.Period.TimeInfo time)
+            throws IOException {
+        if (time == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("day").value(time.day);
+        out.name("time").value(time.time);
+        out.endObject();
+    }
+
+    private static void writeReview(JsonWriter out, GooglePlaceDetails.Review review) throws IOException {
+        out.beginObject();
+        out.name("author_name").value(review.authorName);
+        out.name("author_url").value(review.authorUrl);
+        out.name("language").value(review.language);
+        out.name("profile_photo_url").value(review.profilePhotoUrl);
+        out.name("rating").value(review.rating);
+        out.name("relative_time_description").value(review.relativeTimeDescription);
+        out.name("text").value(review.text);
+        out.name("time").value(review.time);
+        out.endObject();
+    }
+
+    static void writeRoute(JsonWriter out, Route route) throws IOException {
+        out.beginObject();
+        out.name("summary").value(route.summary);
+        out.name("legs");
+        writeList(out, route.legs, GoogleJsonAdapters::writeLeg);
+        out.name("overview_polyline");
+        if (route.overviewPolyline == null) {
+            out.nullValue();
+        } else {
+            out.beginObject();
+            out.name("points").value(route.overviewPolyline.points);
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    private static void writeLeg(JsonWriter out, Leg leg) throws IOException {
+        out.beginObject();
+        out.name("distance");
+        if (leg.distance == null) {
+            out.nullValue();
+        } else {
+            out.beginObject();
+            out.name("text").value(leg.distance.text);
+            out.name("value").value(leg.distance.value);
+            out.endObject();
+        }
+        out.name("duration");
+        if (leg.duration == null) {
+            out.nullValue();
+        } else {
+            out.beginObject();
+            out.name("text").value(leg.duration.text);
+            out.name("value").value(leg.duration.value);
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    interface ElementWriter<T> {
+        void write(JsonWriter out, T value) throws IOException;
+    }
+
+    private static <T> void writeList(JsonWriter out, List<T> list, ElementWriter<T> element) throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (T item : list) {
+            element.write(out, item);
+        }
+        out.endArray();
+    }
+}
@@ -3,34 +3,59 @@ package ca.gbc.comp3074.uiprototype.api;
 import android.content.Context;
 import android.util.Log;
 
-import com.google.gson.Gson;
 import com.google.gson.annotations.SerializedName;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import okhttp3.Call;
-import okhttp3.Callback;
+import okhttp3.CacheControl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.Response;
+import ca.gbc.comp3074.uiprototype.data.AppExecutors;
 import ca.gbc.comp3074.uiprototype.utils.AppConfig;
 
 public class GooglePlacesService {
     private static final String TAG = "GooglePlacesService";
     private static final String BASE_URL = "https://maps.googleapis.com/maps/api/place";
     
+    // Place types searched by searchQuietPlaces, merged in this order
+    private static final String[] QUIET_PLACE_TYPES = {"library", "park", "cafe", "museum", "art_gallery", "spa"};
+    // Overall deadline for one searchQuietPlaces fan-out
+    private static final long NEARBY_SEARCH_DEADLINE_MS = 8000;
+
+    // Google serves at most three pages of 20 per search
+    private static final int MAX_PAGES = 3;
+    // A next_page_token is rejected with INVALID_REQUEST until shortly after it is issued
+    private static final long PAGE_TOKEN_DELAY_MS = 2000;
+    // ...and stops working a few minutes later, so a token read back from the tile cache
+    // is only followed while it is younger than this
+    private static final long PAGE_TOKEN_MAX_AGE_MS = 2 * 60 * 1000;
+    private static final int MAX_PAGE_TOKEN_ATTEMPTS = 3;
+
+    // Shared by every service instance, so screens that each create their own still coalesce
+    private static final SingleFlight<NearbyTileCache.Entry> NEARBY_FLIGHTS = new SingleFlight<>();
+    private static final SingleFlight<GooglePlaceDetails> DETAILS_FLIGHTS = new SingleFlight<>();
+
     private final OkHttpClient httpClient;
-    private final Gson gson;
+    private final NearbyTileCache tileCache;
 
     public GooglePlacesService() {
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
-        this.gson = new Gson();
+        // Shared client: one connection pool, dispatcher and disk cache for the app
+        this.httpClient = HttpClientProvider.get();
+        this.tileCache = NearbyTileCache.get();
+    }
+
+    /**
+     * The place types searchQuietPlaces covers, in merge order
+     */
+    public static String[] getQuietPlaceTypes() {
+        return QUIET_PLACE_TYPES.clone();
     }
 
     public interface PlacesCallback {
@@ -39,89 +64,486 @@ public class GooglePlacesService {
     }
 
     /**
-     * Search for quiet places near a location
-     * Types: library, park, cafe, museum, etc.
+     * Result of {@link #searchQuietPlaces}. Called exactly once, on a background thread.
+     */
+    public interface NearbySearchCallback {
+        /**
+         * @param places   results of every type that answered, deduplicated by placeId
+         * @param complete false if some types failed or missed the deadline, so places
+         *                 missing from the list may still exist
+         * @param cached   true if every type was answered from the tile cache, so nothing
+         *                 new was learned from Google
+         */
+        void onSuccess(List<GooglePlace> places, boolean complete, boolean cached);
+
+        void onError(String error);
+    }
+
+    /**
+     * Where {@link #searchQuietPlaces} actually searches from for this location and radius:
+     * the center of the geohash tile the location snaps to, as {lat, lng}
+     */
+    public static double[] searchCenter(double latitude, double longitude, int radius) {
+        return GeoHash.center(GeoHash.encode(latitude, longitude, NearbyTileCache.precisionForRadius(radius)));
+    }
+
+    /**
+     * Search for quiet places near a location.
+     * The location is snapped to a geohash tile and each place type is answered from the
+     * tile cache when it holds fresh results; only the missing types are fetched, all
+     * concurrently, and merged once all have answered, failed or hit the shared deadline.
+     * A failing type does not fail the search; only when every type fails is onError called.
+     */
+    public CallHandle searchQuietPlaces(double latitude, double longitude, int radius,
+            NearbySearchCallback callback) {
+        CallHandle handle = new CallHandle();
+        // Cache lookups may read from disk
+        AppExecutors.getInstance().background().execute(() -> {
+            if (handle.isCancelled()) {
+                return;
+            }
+            final String tile = GeoHash.encode(latitude, longitude, NearbyTileCache.precisionForRadius(radius));
+            final int typeCount = QUIET_PLACE_TYPES.length;
+            final List<List<GooglePlace>> resultsByType = new ArrayList<>(Collections.nCopies(typeCount, null));
+            final List<String> errors = new ArrayList<>();
+            final AtomicInteger remaining = new AtomicInteger(typeCount);
+            // One deadline for every type, however long each waits for quota or retries
+            final long deadline = GoogleApiRequest.deadlineIn(NEARBY_SEARCH_DEADLINE_MS);
+            // Entries stored before the search started came from the cache
+            final long startedAt = System.currentTimeMillis();
+            final AtomicBoolean fetched = new AtomicBoolean();
+
+            for (int i = 0; i < typeCount; i++) {
+                final int typeIndex = i;
+                final String type = QUIET_PLACE_TYPES[i];
+                loadPage(tile, radius, type, 1, null, deadline, QuotaManager.PRIORITY_USER, handle,
+                        new SingleFlight.Listener<NearbyTileCache.Entry>() {
+                            @Override
+                            public void onSuccess(NearbyTileCache.Entry entry) {
+                                if (entry.fetchedAt >= startedAt) {
+                                    fetched.set(true);
+                                }
+                                synchronized (resultsByType) {
+                                    resultsByType.set(typeIndex, entry.places);
+                                }
+                                finishType();
+                            }
+
+                            @Override
+                            public void onError(String error) {
+                                Log.e(TAG, "Error searching for " + type + ": " + error);
+                                synchronized (resultsByType) {
+                                    errors.add(type + ": " + error);
+                                }
+                                finishType();
+                            }
+
+                            private void finishType() {
+                                if (remaining.decrementAndGet() == 0) {
+                                    handle.complete();
+                                    deliverMerged(resultsByType, errors, !fetched.get(), callback);
+                                }
+                            }
+                        });
+            }
+        });
+        return handle;
+    }
+
+    private static void deliverMerged(List<List<GooglePlace>> resultsByType, List<String> errors,
+            boolean cached, NearbySearchCallback callback) {
+        List<GooglePlace> merged;
+        synchronized (resultsByType) {
+            merged = mergeByPlaceId(resultsByType);
+        }
+        if (merged == null) {
+            callback.onError(String.join("; ", errors));
+            return;
+        }
+        callback.onSuccess(merged, errors.isEmpty(), cached);
+    }
+
+    /**
+     * Results of every type that answered, deduplicated by placeId and merged in type order
+     * so the same answers always produce the same list; null if no type answered
+     */
+    private static List<GooglePlace> mergeByPlaceId(List<List<GooglePlace>> resultsByType) {
+        Map<String, GooglePlace> merged = new LinkedHashMap<>();
+        boolean anySucceeded = false;
+        for (List<GooglePlace> places : resultsByType) {
+            if (places == null) {
+                continue;
+            }
+            anySucceeded = true;
+            for (GooglePlace place : places) {
+                if (place.placeId != null && !merged.containsKey(place.placeId)) {
+                    merged.put(place.placeId, place);
+                }
+            }
+        }
+        return anySucceeded ? new ArrayList<>(merged.values()) : null;
+    }
+
+    /**
+     * What {@link #searchQuietPlaces} would answer from the tile cache alone: the merged
+     * places if every type has a fresh cached first page, otherwise null. Costs no quota.
+     * May read from disk, so call it off the main thread.
+     */
+    public List<GooglePlace> cachedQuietPlaces(double latitude, double longitude, int radius) {
+        String tile = GeoHash.encode(latitude, longitude, NearbyTileCache.precisionForRadius(radius));
+        long now = System.currentTimeMillis();
+        List<List<GooglePlace>> resultsByType = new ArrayList<>();
+        for (String type : QUIET_PLACE_TYPES) {
+            NearbyTileCache.Entry entry = tileCache.getFresh(
+                    NearbyTileCache.pageKey(NearbyTileCache.key(tile, type, radius), 1), now);
+            if (entry == null) {
+                return null;
+            }
+            resultsByType.add(entry.places);
+        }
+        return mergeByPlaceId(resultsByType);
+    }
+
+    /**
+     * Search for places by specific type, served from the tile cache when it is fresh
      */
-    public void searchQuietPlaces(double latitude, double longitude, int radius, PlacesCallback callback) {
-        // Search for different types of quiet places
-        String[] placeTypes = {"library", "park", "cafe", "museum", "art_gallery", "spa"};
-        List<GooglePlace> allPlaces = new ArrayList<>();
-        
-        for (String type : placeTypes) {
-            searchPlacesByType(latitude, longitude, radius, type, new PlacesCallback() {
+    public CallHandle searchPlacesByType(double latitude, double longitude, int radius, String type,
+            PlacesCallback callback) {
+        CallHandle handle = new CallHandle();
+        AppExecutors.getInstance().background().execute(() -> {
+            if (handle.isCancelled()) {
+                return;
+            }
+            String tile = GeoHash.encode(latitude, longitude, NearbyTileCache.precisionForRadius(radius));
+            searchTile(tile, radius, type, 0, handle, new PlacesCallback() {
                 @Override
                 public void onSuccess(List<GooglePlace> places) {
-                    synchronized (allPlaces) {
-                        allPlaces.addAll(places);
-                        // If we've collected results from all types, return them
-                        if (allPlaces.size() > 0) {
-                            callback.onSuccess(allPlaces);
-                        }
-                    }
+                    handle.complete();
+                    callback.onSuccess(places);
                 }
 
                 @Override
                 public void onError(String error) {
-                    Log.e(TAG, "Error searching for " + type + ": " + error);
+                    handle.complete();
+                    callback.onError(error);
                 }
             });
+        });
+        return handle;
+    }
+
+    /**
+     * Pages through a nearby search by type. Nothing is fetched until
+     * {@link NearbyPager#loadNextPage()} is called; each page goes to the callback as
+     * soon as it arrives, so the first one can be shown while the next is requested.
+     */
+    public NearbyPager pageNearbySearch(double latitude, double longitude, int radius, String type,
+            PageCallback callback) {
+        return pageNearbySearch(latitude, longitude, radius, type, QuotaManager.PRIORITY_USER, callback);
+    }
+
+    /**
+     * @param priority a {@link QuotaManager} priority; background pagers should pass
+     *                 PRIORITY_PREFETCH so they never hold up a search the user is waiting on
+     */
+    public NearbyPager pageNearbySearch(double latitude, double longitude, int radius, String type,
+            int priority, PageCallback callback) {
+        String tile = GeoHash.encode(latitude, longitude, NearbyTileCache.precisionForRadius(radius));
+        return new NearbyPager(tile, radius, type, priority, callback);
+    }
+
+    public interface PageCallback {
+        /**
+         * One page of results, delivered in order on a background thread
+         *
+         * @param page    1-based page number
+         * @param hasMore whether {@link NearbyPager#loadNextPage()} has another page to load
+         */
+        void onPage(List<GooglePlace> places, int page, boolean hasMore);
+
+        void onError(String error);
+    }
+
+    /**
+     * Follows next_page_token for one (tile, type, radius) search. Google serves at most
+     * MAX_PAGES pages, and a token only works a short while after it was issued, so the
+     * next page is requested no earlier than PAGE_TOKEN_DELAY_MS after the page before.
+     * A page read back from the tile cache only leads on while its token is younger than
+     * PAGE_TOKEN_MAX_AGE_MS; past that the pager stops there.
+     */
+    public class NearbyPager {
+        private final String tile;
+        private final int radius;
+        private final String type;
+        private final int priority;
+        private final PageCallback callback;
+        private final CallHandle handle = new CallHandle();
+
+        private int loadedPages;
+        private int requestedPages;
+        private String nextPageToken;
+        private long tokenIssuedAt;
+        private boolean loading;
+        private volatile boolean cancelled;
+
+        NearbyPager(String tile, int radius, String type, int priority, PageCallback callback) {
+            this.tile = tile;
+            this.radius = radius;
+            this.type = type;
+            this.priority = priority;
+            this.callback = callback;
+        }
+
+        public synchronized boolean hasMore() {
+            return loadedPages == 0 || (nextPageToken != null && loadedPages < MAX_PAGES);
+        }
+
+        /**
+         * Requests the next page; ignored while a page is loading or when there is none
+         */
+        public void loadNextPage() {
+            synchronized (this) {
+                if (!loading) {
+                    requestedPages = Math.max(requestedPages, loadedPages + 1);
+                }
+            }
+            fill();
+        }
+
+        /**
+         * Keeps loading, one page after the other, until the given number of pages has been
+         * delivered or the results run out
+         */
+        public void loadPages(int pages) {
+            synchronized (this) {
+                requestedPages = Math.max(requestedPages, Math.min(pages, MAX_PAGES));
+            }
+            fill();
         }
+
+        private void fill() {
+            final int page;
+            final String token;
+            final long delayMs;
+            synchronized (this) {
+                if (cancelled || loading || !hasMore() || loadedPages >= requestedPages) {
+                    return;
+                }
+                loading = true;
+                page = loadedPages + 1;
+                token = nextPageToken;
+                delayMs = page == 1 ? 0
+                        : Math.max(0, tokenIssuedAt + PAGE_TOKEN_DELAY_MS - System.currentTimeMillis());
+            }
+
+            Runnable load = () -> loadPage(tile, radius, type, page, token, 0, priority, handle,
+                    new SingleFlight.Listener<NearbyTileCache.Entry>() {
+                        @Override
+                        public void onSuccess(NearbyTileCache.Entry entry) {
+                            boolean more;
+                            synchronized (NearbyPager.this) {
+                                loading = false;
+                                loadedPages = page;
+                                // A token read back from the cache may have expired already;
+                                // following it would only spend quota on INVALID_REQUEST
+                                nextPageToken = System.currentTimeMillis() - entry.fetchedAt < PAGE_TOKEN_MAX_AGE_MS
+                                        ? entry.nextPageToken : null;
+                                tokenIssuedAt = entry.fetchedAt;
+                                more = hasMore();
+                            }
+                            if (!cancelled) {
+                                callback.onPage(entry.places, page, more);
+                            }
+                            fill();
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            synchronized (NearbyPager.this) {
+                                loading = false;
+                            }
+                            if (!cancelled) {
+                                callback.onError(error);
+                            }
+                        }
+                    });
+            if (delayMs > 0) {
+                AppExecutors.getInstance().scheduled().schedule(
+                        () -> AppExecutors.getInstance().background().execute(load),
+                        delayMs, TimeUnit.MILLISECONDS);
+            } else {
+                AppExecutors.getInstance().background().execute(load);
+            }
+        }
+
+        /**
+         * Drops pages still on the way, and stops their requests unless another caller
+         * shares them
+         */
+        public void cancel() {
+            cancelled = true;
+            handle.cancel();
+        }
+    }
+
+    /**
+     * Answers the first page of one (tile, type, radius) from the cache, or searches from
+     * the tile center and caches the answer. Must run off the main thread.
+     *
+     * @param deadlineMs time by which the search must be answered, see GoogleApiRequest, or 0 for none
+     */
+    private void searchTile(String tile, int radius, String type, long deadlineMs, CallHandle handle,
+            PlacesCallback callback) {
+        loadPage(tile, radius, type, 1, null, deadlineMs, QuotaManager.PRIORITY_USER, handle,
+                new SingleFlight.Listener<NearbyTileCache.Entry>() {
+                    @Override
+                    public void onSuccess(NearbyTileCache.Entry entry) {
+                        callback.onSuccess(entry.places);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
+                    }
+                });
     }
 
     /**
-     * Search for places by specific type
+     * One page of a tile search, from the cache or the network. Later pages need the
+     * token from the page before.
      */
-    public void searchPlacesByType(double latitude, double longitude, int radius, String type, PlacesCallback callback) {
+    private void loadPage(String tile, int radius, String type, int page, String pageToken, long deadlineMs,
+            int priority, CallHandle handle, SingleFlight.Listener<NearbyTileCache.Entry> listener) {
+        final String key = NearbyTileCache.pageKey(NearbyTileCache.key(tile, type, radius), page);
+        NearbyTileCache.Entry cached = tileCache.getFresh(key, System.currentTimeMillis());
+        if (handle.isCancelled()) {
+            return;
+        }
+        if (cached != null) {
+            listener.onSuccess(cached);
+            return;
+        }
+        if (page > 1 && pageToken == null) {
+            listener.onError("No page token for page " + page);
+            return;
+        }
+
+        // Concurrent callers for the same page of a tile share one request
+        NEARBY_FLIGHTS.run(key, handle, listener, (flight, done) ->
+                fetchPage(key, tile, radius, type, page, pageToken, deadlineMs, priority, 1, flight, done));
+    }
+
+    private void fetchPage(String key, String tile, int radius, String type, int page, String pageToken,
+            long deadlineMs, int priority, int attempt, CallHandle flight,
+            SingleFlight.Listener<NearbyTileCache.Entry> done) {
+        Request request;
+        if (page == 1) {
+            double[] center = GeoHash.center(tile);
+            request = newNearbySearchRequest(center[0], center[1], radius, type);
+        } else {
+            request = newNextPageRequest(pageToken);
+        }
+        if (attempt > 1) {
+            // Same URL as the attempt that found the token inactive; ask Google again
+            request = request.newBuilder().cacheControl(CacheControl.FORCE_NETWORK).build();
+        }
+        // Calls of one fan-out share one deadline, retries and quota waits included
+        GoogleApiRequest.enqueue(httpClient, request, deadlineMs, QuotaManager.NEARBY_SEARCH, priority, flight,
+                GoogleJsonAdapters.PLACES_RESPONSE, response -> response.status,
+                new SingleFlight.Listener<PlacesResponse>() {
+                    @Override
+                    public void onSuccess(PlacesResponse response) {
+                        if (page > 1 && "INVALID_REQUEST".equals(response.status) && attempt < MAX_PAGE_TOKEN_ATTEMPTS) {
+                            // The token is not active yet; Google gives no signal other than this status
+                            AppExecutors.getInstance().scheduled().schedule(
+                                    () -> fetchPage(key, tile, radius, type, page, pageToken, deadlineMs, priority,
+                                            attempt + 1, flight, done),
+                                    PAGE_TOKEN_DELAY_MS, TimeUnit.MILLISECONDS);
+                            return;
+                        }
+                        // ZERO_RESULTS is an answer, not a failure: the type has nothing nearby
+                        if (!"OK".equals(response.status) && !"ZERO_RESULTS".equals(response.status)) {
+                            done.onError("API error: " + response.status);
+                            return;
+                        }
+                        List<GooglePlace> places = response.results != null ? response.results : new ArrayList<>();
+                        done.onSuccess(tileCache.put(key, places, response.nextPageToken, System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        done.onError(error);
+                    }
+                });
+    }
+
+    private Request newNearbySearchRequest(double latitude, double longitude, int radius, String type) {
         String url = BASE_URL + "/nearbysearch/json?" +
                 "location=" + latitude + "," + longitude +
                 "&radius=" + radius +
                 "&type=" + type +
                 "&key=" + AppConfig.GOOGLE_PLACES_API_KEY;
 
-        Request request = new Request.Builder()
+        return new Request.Builder()
+                .url(url)
+                .get()
+                .build();
+    }
+
+    private Request newNextPageRequest(String pageToken) {
+        String url = BASE_URL + "/nearbysearch/json?" +
+                "pagetoken=" + pageToken +
+                "&key=" + AppConfig.GOOGLE_PLACES_API_KEY;
+
+        return new Request.Builder()
                 .url(url)
                 .get()
                 .build();
+    }
 
-        httpClient.newCall(request).enqueue(new Callback() {
+    /**
+     * Get place details by place ID
+     */
+    public CallHandle getPlaceDetails(String placeId, PlaceDetailsCallback callback) {
+        return getPlaceDetails(placeId, PlaceDetailsFields.ALL, callback);
+    }
+
+    /**
+     * Get only some groups of place details, see {@link PlaceDetailsFields}. Fields
+     * outside the requested groups are left null or zero in the result.
+     */
+    public CallHandle getPlaceDetails(String placeId, int fieldGroups, PlaceDetailsCallback callback) {
+        return getPlaceDetails(placeId, fieldGroups, QuotaManager.PRIORITY_USER, callback);
+    }
+
+    /**
+     * @param priority a {@link QuotaManager} priority; prefetches pass PRIORITY_PREFETCH
+     */
+    public CallHandle getPlaceDetails(String placeId, int fieldGroups, int priority,
+            PlaceDetailsCallback callback) {
+        CallHandle handle = new CallHandle();
+        // Details for one place asked for twice at once (a quick re-tap) go out once
+        DETAILS_FLIGHTS.run(placeId + "/" + fieldGroups, handle, new SingleFlight.Listener<GooglePlaceDetails>() {
             @Override
-            public void onFailure(Call call, IOException e) {
-                Log.e(TAG, "Network error: " + e.getMessage());
-                callback.onError("Network error: " + e.getMessage());
+            public void onSuccess(GooglePlaceDetails details) {
+                handle.complete();
+                callback.onSuccess(details);
             }
 
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (!response.isSuccessful()) {
-                    callback.onError("HTTP error: " + response.code());
-                    return;
-                }
-
-                try {
-                    String responseBody = response.body().string();
-                    PlacesResponse placesResponse = gson.fromJson(responseBody, PlacesResponse.class);
-                    
-                    if ("OK".equals(placesResponse.status)) {
-                        List<GooglePlace> places = placesResponse.results != null ? placesResponse.results : new ArrayList<>();
-                        callback.onSuccess(places);
-                    } else {
-                        callback.onError("API error: " + placesResponse.status);
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Parse error: " + e.getMessage());
-                    callback.onError("Parse error: " + e.getMessage());
-                }
+            public void onError(String error) {
+                handle.complete();
+                callback.onError(error);
             }
-        });
+        }, (flight, done) -> fetchPlaceDetails(placeId, fieldGroups, priority, flight, done));
+        return handle;
     }
 
-    /**
-     * Get place details by place ID
-     */
-    public void getPlaceDetails(String placeId, PlaceDetailsCallback callback) {
+    private void fetchPlaceDetails(String placeId, int fieldGroups, int priority, CallHandle flight,
+            SingleFlight.Listener<GooglePlaceDetails> callback) {
         String url = BASE_URL + "/details/json?" +
                 "place_id=" + placeId +
-                "&fields=name,rating,formatted_address,formatted_phone_number,opening_hours,photos,geometry,price_level,reviews" +
+                "&fields=" + PlaceDetailsFields.toFieldMask(fieldGroups) +
                 "&key=" + AppConfig.GOOGLE_PLACES_API_KEY;
 
         Request request = new Request.Builder()
@@ -129,33 +551,23 @@ public class GooglePlacesService {
                 .get()
                 .build();
 
-        httpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                callback.onError("Network error: " + e.getMessage());
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (!response.isSuccessful()) {
-                    callback.onError("HTTP error: " + response.code());
-                    return;
-                }
+        GoogleApiRequest.enqueue(httpClient, request, 0, QuotaManager.PLACE_DETAILS, priority, flight,
+                GoogleJsonAdapters.PLACE_DETAILS_RESPONSE, response -> response.status,
+                new SingleFlight.Listener<PlaceDetailsResponse>() {
+                    @Override
+                    public void onSuccess(PlaceDetailsResponse detailsResponse) {
+                        if ("OK".equals(detailsResponse.status)) {
+                            callback.onSuccess(detailsResponse.result);
+                        } else {
+                            callback.onError("API error: " + detailsResponse.status);
+                        }
+                    }
 
-                try {
-                    String responseBody = response.body().string();
-                    PlaceDetailsResponse detailsResponse = gson.fromJson(responseBody, PlaceDetailsResponse.class);
-                    
-                    if ("OK".equals(detailsResponse.status)) {
-                        callback.onSuccess(detailsResponse.result);
-                    } else {
-                        callback.onError("API error: " + detailsResponse.status);
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
                     }
-                } catch (Exception e) {
-                    callback.onError("Parse error: " + e.getMessage());
-                }
-            }
-        });
+                });
     }
 
     public interface PlaceDetailsCallback {
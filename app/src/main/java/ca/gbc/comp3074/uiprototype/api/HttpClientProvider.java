@@ -0,0 +1,80 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * The one OkHttpClient for the app. Google services and the Supabase Ktor engine all
+ * share its connection pool (so TLS sessions and HTTP/2 connections are reused),
+ * its dispatcher and its on-disk response cache.
+ *
+ * The disk cache only keeps what servers mark cacheable. Places results are not given a
+ * max-age here: Google answers errors with HTTP 200, so a forced max-age would store them,
+ * and nearby results and details already have their own TTL caches
+ * ({@link NearbyTileCache} and Room).
+ *
+ * Call {@link #init(Context)} once from the Application; {@link #get()} before that
+ * returns a client without the disk cache.
+ */
+public final class HttpClientProvider {
+    private static final String TAG = "HttpClientProvider";
+
+    private static final long CACHE_SIZE_BYTES = 10L * 1024 * 1024; // 10 MB
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS = 16;
+    // The nearby search fans out one request per place type to the same host
+    private static final int MAX_REQUESTS_PER_HOST = 6;
+
+    private static volatile OkHttpClient client;
+
+    private HttpClientProvider() {
+    }
+
+    public static void init(Context context) {
+        if (client == null) {
+            synchronized (HttpClientProvider.class) {
+                if (client == null) {
+                    File cacheDir = new File(context.getApplicationContext().getCacheDir(), "http");
+                    client = build(new Cache(cacheDir, CACHE_SIZE_BYTES));
+                }
+            }
+        }
+    }
+
+    public static OkHttpClient get() {
+        if (client == null) {
+            synchronized (HttpClientProvider.class) {
+                if (client == null) {
+                    Log.w(TAG, "HTTP client used before init, responses will not be cached");
+                    client = build(null);
+                }
+            }
+        }
+        return client;
+    }
+
+    private static OkHttpClient build(Cache cache) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS);
+        if (cache != null) {
+            builder.cache(cache);
+        }
+        return builder.build();
+    }
+}
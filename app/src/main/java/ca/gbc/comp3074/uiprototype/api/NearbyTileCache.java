@@ -0,0 +1,203 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService.GooglePlace;
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService.PlacesResponse;
+import ca.gbc.comp3074.uiprototype.utils.AppConfig;
+
+/**
+ * Nearby search results per (geohash tile, place type, radius). A memory LRU sits in
+ * front of one small JSON file per key under the app cache directory, so results
+ * survive process death. Entries older than the nearby TTL are treated as missing.
+ *
+ * Call {@link #init(Context)} once from the Application; {@link #get()} before that
+ * returns a memory-only cache. Disk access happens on the calling thread, so callers
+ * should stay off the main thread.
+ */
+public final class NearbyTileCache {
+    private static final String TAG = "NearbyTileCache";
+
+    private static final int MAX_MEMORY_ENTRIES = 64;
+    private static final int MAX_DISK_ENTRIES = 512;
+    private static final String DIR_NAME = "nearby_tiles";
+
+    private static volatile NearbyTileCache instance;
+
+    private final LruCache<String, Entry> memory = new LruCache<>(MAX_MEMORY_ENTRIES);
+    private final File directory;
+
+    static final class Entry {
+        final List<GooglePlace> places;
+        // Token for the following page, null on the last page
+        final String nextPageToken;
+        final long fetchedAt;
+
+        Entry(List<GooglePlace> places, String nextPageToken, long fetchedAt) {
+            this.places = places;
+            this.nextPageToken = nextPageToken;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private NearbyTileCache(File directory) {
+        this.directory = directory;
+    }
+
+    public static void init(Context context) {
+        if (instance == null) {
+            synchronized (NearbyTileCache.class) {
+                if (instance == null) {
+                    instance = new NearbyTileCache(new File(context.getApplicationContext().getCacheDir(), DIR_NAME));
+                }
+            }
+        }
+    }
+
+    public static NearbyTileCache get() {
+        if (instance == null) {
+            synchronized (NearbyTileCache.class) {
+                if (instance == null) {
+                    Log.w(TAG, "Tile cache used before init, results will not be kept on disk");
+                    instance = new NearbyTileCache(null);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Tile precision for a search radius. Tiles are kept to a quarter of the radius, so
+     * snapping to the tile center shifts the search circle by under a fifth of it.
+     */
+    public static int precisionForRadius(int radiusMeters) {
+        return GeoHash.precisionForCellSize(radiusMeters / 4.0);
+    }
+
+    public static String key(String tile, String type, int radiusMeters) {
+        return tile + "_" + type + "_" + radiusMeters;
+    }
+
+    /**
+     * Key for a later page of the search whose first page is cached under firstPageKey
+     */
+    public static String pageKey(String firstPageKey, int page) {
+        return page <= 1 ? firstPageKey : firstPageKey + "_p" + page;
+    }
+
+    /**
+     * Fresh results for a key, or null if they are missing or expired
+     */
+    Entry getFresh(String key, long now) {
+        Entry entry = memory.get(key);
+        if (entry == null) {
+            entry = readFromDisk(key);
+            if (entry != null) {
+                memory.put(key, entry);
+            }
+        }
+        if (entry == null || !isFresh(entry.fetchedAt, now)) {
+            return null;
+        }
+        return entry;
+    }
+
+    Entry put(String key, List<GooglePlace> places, String nextPageToken, long now) {
+        Entry entry = new Entry(Collections.unmodifiableList(places), nextPageToken, now);
+        memory.put(key, entry);
+        writeToDisk(key, entry);
+        return entry;
+    }
+
+    public void clear() {
+        memory.evictAll();
+        File[] files = directory != null ? directory.listFiles() : null;
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static boolean isFresh(long fetchedAt, long now) {
+        return fetchedAt > 0 && now - fetchedAt < AppConfig.NEARBY_CACHE_TTL_MS;
+    }
+
+    private Entry readFromDisk(String key) {
+        if (directory == null) {
+            return null;
+        }
+        File file = new File(directory, key + ".json");
+        long fetchedAt = file.lastModified();
+        if (fetchedAt == 0) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            PlacesResponse response = GoogleJsonAdapters.decode(reader, GoogleJsonAdapters.PLACES_RESPONSE);
+            List<GooglePlace> places = response.results != null ? response.results : Collections.emptyList();
+            return new Entry(Collections.unmodifiableList(places), response.nextPageToken, fetchedAt);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Dropping unreadable tile " + key + ": " + e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        if (directory == null || (!directory.isDirectory() && !directory.mkdirs())) {
+            return;
+        }
+        PlacesResponse response = new PlacesResponse();
+        response.status = "OK";
+        response.results = entry.places;
+        response.nextPageToken = entry.nextPageToken;
+
+        // Write next to the target and rename, so a reader never sees half a file
+        File target = new File(directory, key + ".json");
+        File temp = new File(directory, key + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            // Same adapter as the read side, so the file always reads back
+            GoogleJsonAdapters.encode(writer, GoogleJsonAdapters.PLACES_RESPONSE, response);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not store tile " + key + ": " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        // The file time doubles as the fetch time
+        temp.setLastModified(entry.fetchedAt);
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            return;
+        }
+        trimDisk();
+    }
+
+    /**
+     * Drops the oldest files once the directory holds more than MAX_DISK_ENTRIES
+     */
+    private void trimDisk() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null || files.length <= MAX_DISK_ENTRIES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - MAX_DISK_ENTRIES; i++) {
+            files[i].delete();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups of Place Details fields, combined as bit flags. Each group goes stale at its
+ * own pace, so a refresh asks Google only for the groups that need it; the groups also
+ * follow Google's billing tiers (Basic, Contact, Atmosphere).
+ */
+public final class PlaceDetailsFields {
+
+    // Name, address, location and photos; Basic tier
+    public static final int BASIC = 1;
+    // Phone number; Contact tier
+    public static final int CONTACT = 1 << 1;
+    // Opening hours and open_now; Contact tier, but goes stale within the hour
+    public static final int HOURS = 1 << 2;
+    // Rating, review count, price level and reviews; Atmosphere tier
+    public static final int REVIEWS = 1 << 3;
+
+    public static final int ALL = BASIC | CONTACT | HOURS | REVIEWS;
+
+    private PlaceDetailsFields() {
+    }
+
+    /**
+     * The comma separated fields parameter for the given groups
+     */
+    public static String toFieldMask(int groups) {
+        // place_id is free and keeps partial responses tied to their place
+        List<String> fields = new ArrayList<>();
+        fields.add("place_id");
+        if ((groups & BASIC) != 0) {
+            fields.add("name");
+            fields.add("formatted_address");
+            fields.add("geometry");
+            fields.add("photos");
+        }
+        if ((groups & CONTACT) != 0) {
+            fields.add("formatted_phone_number");
+        }
+        if ((groups & HOURS) != 0) {
+            fields.add("opening_hours");
+        }
+        if ((groups & REVIEWS) != 0) {
+            fields.add("rating");
+            fields.add("user_ratings_total");
+            fields.add("price_level");
+            fields.add("reviews");
+        }
+        return String.join(",", fields);
+    }
+}
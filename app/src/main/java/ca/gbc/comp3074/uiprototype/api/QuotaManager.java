@@ -0,0 +1,322 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import ca.gbc.comp3074.uiprototype.data.AppExecutors;
+import ca.gbc.comp3074.uiprototype.utils.AppConfig;
+
+/**
+ * Client-side budget for Google web service calls. Each endpoint has a token bucket that
+ * smooths bursts, a queue where user-initiated calls go ahead of prefetches, and a daily
+ * request budget counted against Google's quota day.
+ *
+ * Call {@link #init(Context)} once from the Application; {@link #get()} before that
+ * counts the daily budget in memory only.
+ */
+public final class QuotaManager {
+    private static final String TAG = "QuotaManager";
+
+    public static final String NEARBY_SEARCH = "nearbysearch";
+    public static final String PLACE_DETAILS = "details";
+    public static final String DIRECTIONS = "directions";
+
+    // Something the user is waiting on
+    public static final int PRIORITY_USER = 0;
+    // Speculative or background work; only spends the upper half of a bucket
+    public static final int PRIORITY_PREFETCH = 1;
+
+    // Prefetches stop once this share of a daily budget is spent, leaving the rest to the user
+    private static final float PREFETCH_BUDGET_SHARE = 0.8f;
+    private static final int MAX_QUEUED_PREFETCHES = 20;
+    // How long an endpoint rests after Google answers OVER_QUERY_LIMIT
+    private static final long OVER_LIMIT_PAUSE_MS = 2000;
+
+    private static final String PREFS_NAME = "api_quota";
+    private static final String KEY_DAY = "day";
+
+    private static volatile QuotaManager instance;
+
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    private final SharedPreferences prefs;
+    // Google quotas reset at midnight Pacific time
+    private final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.ROOT);
+    private String day;
+    private final Map<String, Integer> usedToday = new HashMap<>();
+
+    /**
+     * Answer to {@link #acquire}; exactly one method is called, possibly on another thread
+     */
+    interface Permit {
+        void granted();
+
+        void denied(String reason);
+    }
+
+    private QuotaManager(SharedPreferences prefs) {
+        this.prefs = prefs;
+        dayFormat.setTimeZone(TimeZone.getTimeZone("America/Los_Angeles"));
+        buckets.put(NEARBY_SEARCH, new Bucket(NEARBY_SEARCH, 10, 5, AppConfig.NEARBY_DAILY_REQUEST_BUDGET));
+        buckets.put(PLACE_DETAILS, new Bucket(PLACE_DETAILS, 6, 2, AppConfig.DETAILS_DAILY_REQUEST_BUDGET));
+        buckets.put(DIRECTIONS, new Bucket(DIRECTIONS, 3, 1, AppConfig.DIRECTIONS_DAILY_REQUEST_BUDGET));
+    }
+
+    public static void init(Context context) {
+        if (instance == null) {
+            synchronized (QuotaManager.class) {
+                if (instance == null) {
+                    instance = new QuotaManager(context.getApplicationContext()
+                            .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+                }
+            }
+        }
+    }
+
+    public static QuotaManager get() {
+        if (instance == null) {
+            synchronized (QuotaManager.class) {
+                if (instance == null) {
+                    Log.w(TAG, "Quota manager used before init, daily usage will not be persisted");
+                    instance = new QuotaManager(null);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Requests made today against an endpoint's daily budget
+     */
+    public synchronized int usedToday(String endpoint) {
+        rollOverDay();
+        Integer used = usedToday.get(endpoint);
+        return used != null ? used : 0;
+    }
+
+    /**
+     * Grants the permit once the endpoint's bucket has a token for this priority. Denies
+     * it straight away when the daily budget is spent or too many prefetches are waiting.
+     */
+    void acquire(String endpoint, int priority, Permit permit) {
+        Bucket bucket = buckets.get(endpoint);
+        if (bucket == null) {
+            permit.granted();
+            return;
+        }
+        Runnable answer = null;
+        synchronized (bucket) {
+            String denial = budgetDenial(bucket, priority);
+            if (denial != null) {
+                answer = () -> permit.denied(denial);
+            } else {
+                bucket.refill(System.currentTimeMillis());
+                boolean nobodyAhead = bucket.userQueue.isEmpty()
+                        && (priority == PRIORITY_USER || bucket.prefetchQueue.isEmpty());
+                if (nobodyAhead && bucket.canTake(priority, System.currentTimeMillis())) {
+                    answer = take(bucket, permit, priority);
+                } else if (priority == PRIORITY_USER) {
+                    bucket.userQueue.add(permit);
+                } else if (bucket.prefetchQueue.size() < MAX_QUEUED_PREFETCHES) {
+                    bucket.prefetchQueue.add(permit);
+                } else {
+                    // Prefetches are not worth queueing this deep
+                    answer = () -> permit.denied("Too many prefetches queued for " + endpoint);
+                }
+                if (answer == null) {
+                    scheduleDrain(bucket);
+                }
+            }
+        }
+        // Answered outside the lock, as permits may start calls of their own
+        if (answer != null) {
+            answer.run();
+        }
+    }
+
+    /**
+     * Google answered OVER_QUERY_LIMIT: empty the bucket and hold the endpoint for a moment,
+     * so queued calls do not run straight into the same wall
+     */
+    void reportOverQueryLimit(String endpoint) {
+        Bucket bucket = buckets.get(endpoint);
+        if (bucket == null) {
+            return;
+        }
+        synchronized (bucket) {
+            bucket.tokens = 0;
+            bucket.pausedUntil = System.currentTimeMillis() + OVER_LIMIT_PAUSE_MS;
+        }
+    }
+
+    /**
+     * Takes a permit that is still queued off its queue; it will be neither granted nor denied
+     *
+     * @return whether the permit was still queued
+     */
+    boolean withdraw(String endpoint, Permit permit) {
+        Bucket bucket = buckets.get(endpoint);
+        if (bucket == null) {
+            return false;
+        }
+        synchronized (bucket) {
+            return bucket.userQueue.remove(permit) || bucket.prefetchQueue.remove(permit);
+        }
+    }
+
+    private void scheduleDrain(Bucket bucket) {
+        // Called with the bucket lock held
+        if (bucket.drainScheduled) {
+            return;
+        }
+        bucket.drainScheduled = true;
+        long delay = bucket.millisUntilNextToken(System.currentTimeMillis());
+        AppExecutors.getInstance().scheduled().schedule(() -> drain(bucket), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain(Bucket bucket) {
+        List<Runnable> answers = new ArrayList<>();
+        synchronized (bucket) {
+            bucket.drainScheduled = false;
+            long now = System.currentTimeMillis();
+            bucket.refill(now);
+            while (!bucket.userQueue.isEmpty() && bucket.canTake(PRIORITY_USER, now)) {
+                answers.add(take(bucket, bucket.userQueue.poll(), PRIORITY_USER));
+            }
+            while (bucket.userQueue.isEmpty() && !bucket.prefetchQueue.isEmpty()
+                    && bucket.canTake(PRIORITY_PREFETCH, now)) {
+                answers.add(take(bucket, bucket.prefetchQueue.poll(), PRIORITY_PREFETCH));
+            }
+            if (!bucket.userQueue.isEmpty() || !bucket.prefetchQueue.isEmpty()) {
+                scheduleDrain(bucket);
+            }
+        }
+        for (Runnable answer : answers) {
+            answer.run();
+        }
+    }
+
+    /**
+     * Why the daily budget has no room for another call at this priority, or null if it has;
+     * called with the bucket lock held
+     */
+    private String budgetDenial(Bucket bucket, int priority) {
+        int used = usedToday(bucket.endpoint);
+        if (used >= bucket.dailyBudget) {
+            return "Daily request budget for " + bucket.endpoint + " used up";
+        }
+        if (priority == PRIORITY_PREFETCH && used >= bucket.dailyBudget * PREFETCH_BUDGET_SHARE) {
+            return "Prefetch budget for " + bucket.endpoint + " used up";
+        }
+        return null;
+    }
+
+    /**
+     * Spends a token and a request of the daily budget on the permit, or denies it if the
+     * budget ran out while it was queued. Called with the bucket lock held, so no other call
+     * to the endpoint can be counted between the check and the increment.
+     *
+     * @return the answer to give the permit once the lock is released
+     */
+    private Runnable take(Bucket bucket, Permit permit, int priority) {
+        String denial = budgetDenial(bucket, priority);
+        if (denial != null) {
+            return () -> permit.denied(denial);
+        }
+        bucket.tokens -= 1;
+        countRequest(bucket.endpoint);
+        return permit::granted;
+    }
+
+    private synchronized void countRequest(String endpoint) {
+        // May be called with a bucket lock held; the manager lock is always taken after it
+        rollOverDay();
+        Integer used = usedToday.get(endpoint);
+        int count = (used != null ? used : 0) + 1;
+        usedToday.put(endpoint, count);
+        if (prefs != null) {
+            prefs.edit().putString(KEY_DAY, day).putInt(endpoint, count).apply();
+        }
+    }
+
+    private void rollOverDay() {
+        // Called with the manager lock held
+        String today = dayFormat.format(new Date());
+        if (day == null && prefs != null && today.equals(prefs.getString(KEY_DAY, null))) {
+            // First use in this process: carry on with today's stored counts
+            day = today;
+            for (String endpoint : buckets.keySet()) {
+                usedToday.put(endpoint, prefs.getInt(endpoint, 0));
+            }
+        }
+        if (!today.equals(day)) {
+            day = today;
+            for (String endpoint : buckets.keySet()) {
+                usedToday.put(endpoint, 0);
+            }
+            if (prefs != null) {
+                SharedPreferences.Editor editor = prefs.edit().clear().putString(KEY_DAY, day);
+                editor.apply();
+            }
+        }
+    }
+
+    private static final class Bucket {
+        final String endpoint;
+        final int capacity;
+        final double tokensPerMs;
+        final int dailyBudget;
+        final ArrayDeque<Permit> userQueue = new ArrayDeque<>();
+        final ArrayDeque<Permit> prefetchQueue = new ArrayDeque<>();
+
+        double tokens;
+        long lastRefill;
+        long pausedUntil;
+        boolean drainScheduled;
+
+        Bucket(String endpoint, int capacity, int tokensPerSecond, int dailyBudget) {
+            this.endpoint = endpoint;
+            this.capacity = capacity;
+            this.tokensPerMs = tokensPerSecond / 1000.0;
+            this.dailyBudget = dailyBudget;
+            this.tokens = capacity;
+            this.lastRefill = System.currentTimeMillis();
+        }
+
+        void refill(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerMs);
+                lastRefill = now;
+            }
+        }
+
+        boolean canTake(int priority, long now) {
+            if (now < pausedUntil) {
+                return false;
+            }
+            // Prefetches leave the lower half of the bucket for the user
+            double floor = priority == PRIORITY_USER ? 1 : 1 + capacity / 2.0;
+            return tokens >= floor;
+        }
+
+        /**
+         * Time until the first waiting call can go; called with the lock held
+         */
+        long millisUntilNextToken(long now) {
+            double needed = userQueue.isEmpty() ? 1 + capacity / 2.0 : 1;
+            long untilToken = (long) Math.ceil(Math.max(0, needed - tokens) / tokensPerMs);
+            return Math.max(Math.max(untilToken, pausedUntil - now), 1);
+        }
+    }
+}
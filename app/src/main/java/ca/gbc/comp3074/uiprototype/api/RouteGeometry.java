@@ -0,0 +1,112 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.maps.android.PolyUtil;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A route's decoded overview polyline with its bounds, plus Douglas–Peucker simplified
+ * copies per zoom level. Built off the main thread when the route arrives and kept with
+ * the cached route, so drawing it again costs no decoding.
+ */
+public final class RouteGeometry {
+
+    // Map width in dp at zoom 0
+    private static final double WORLD_DP = 256;
+    // Ground distance of one dp at zoom 0 on the equator
+    private static final double METERS_PER_DP_AT_ZOOM_0 = 156543.03392;
+    // Points closer than this to the simplified line are dropped; below what the eye can see
+    private static final double SIMPLIFY_TOLERANCE_DP = 1;
+    private static final int MAX_ZOOM = 21;
+
+    private final List<LatLng> points;
+    private final LatLngBounds bounds;
+    private final SparseArray<List<LatLng>> simplifiedByZoom = new SparseArray<>();
+
+    private RouteGeometry(List<LatLng> points, LatLngBounds bounds) {
+        this.points = points;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Decodes an encoded polyline; null when it holds no points
+     */
+    public static RouteGeometry decode(String encodedPolyline) {
+        if (encodedPolyline == null || encodedPolyline.isEmpty()) {
+            return null;
+        }
+        List<LatLng> points = PolyUtil.decode(encodedPolyline);
+        if (points.isEmpty()) {
+            return null;
+        }
+        LatLngBounds.Builder builder = LatLngBounds.builder();
+        for (LatLng point : points) {
+            builder.include(point);
+        }
+        return new RouteGeometry(Collections.unmodifiableList(points), builder.build());
+    }
+
+    public List<LatLng> getPoints() {
+        return points;
+    }
+
+    public LatLngBounds getBounds() {
+        return bounds;
+    }
+
+    /**
+     * The points with detail finer than a dp at this zoom removed
+     */
+    public List<LatLng> simplifiedFor(int zoom) {
+        if (points.size() < 3) {
+            return points;
+        }
+        synchronized (simplifiedByZoom) {
+            List<LatLng> simplified = simplifiedByZoom.get(zoom);
+            if (simplified == null) {
+                double latitude = bounds.getCenter().latitude;
+                double metersPerDp = METERS_PER_DP_AT_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom);
+                simplified = Collections.unmodifiableList(PolyUtil.simplify(points, metersPerDp * SIMPLIFY_TOLERANCE_DP));
+                simplifiedByZoom.put(zoom, simplified);
+            }
+            return simplified;
+        }
+    }
+
+    /**
+     * The highest whole zoom at which the bounds fit a map of the given size, matching
+     * what CameraUpdateFactory.newLatLngBounds settles on
+     */
+    public static int zoomToFit(LatLngBounds bounds, float widthDp, float heightDp, float paddingDp) {
+        double lngSpan = bounds.northeast.longitude - bounds.southwest.longitude;
+        if (lngSpan < 0) {
+            // Crosses the antimeridian
+            lngSpan += 360;
+        }
+        double lngFraction = lngSpan / 360;
+        double latFraction = (mercatorY(bounds.northeast.latitude) - mercatorY(bounds.southwest.latitude))
+                / (2 * Math.PI);
+
+        double lngZoom = zoomFor(widthDp - 2 * paddingDp, lngFraction);
+        double latZoom = zoomFor(heightDp - 2 * paddingDp, latFraction);
+        int zoom = (int) Math.floor(Math.min(lngZoom, latZoom));
+        return Math.max(0, Math.min(MAX_ZOOM, zoom));
+    }
+
+    private static double zoomFor(double sizeDp, double worldFraction) {
+        if (worldFraction <= 0 || sizeDp <= 0) {
+            return sizeDp <= 0 ? 0 : MAX_ZOOM;
+        }
+        return Math.log(sizeDp / WORLD_DP / worldFraction) / Math.log(2);
+    }
+
+    private static double mercatorY(double latitude) {
+        double sin = Math.sin(Math.toRadians(latitude));
+        return 0.5 * Math.log((1 + sin) / (1 - sin));
+    }
+}
@@ -0,0 +1,124 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces identical concurrent requests: the first caller for a key starts the call,
+ * later callers with the same key attach to it, and the one result is handed to all
+ * of them. The key is forgotten once the call completes, so results are not cached here.
+ * A caller that cancels is detached; the call itself is cancelled once nobody waits on it.
+ * Once the call completes, callers forget their detach actions and the flight's own
+ * handle is completed.
+ */
+final class SingleFlight<T> {
+
+    interface Listener<T> {
+        void onSuccess(T value);
+
+        void onError(String error);
+    }
+
+    interface Starter<T> {
+        /**
+         * Starts the real request; {@code done} must be called exactly once unless
+         * {@code flight} is cancelled
+         */
+        void start(CallHandle flight, Listener<T> done);
+    }
+
+    private static final class Waiter<T> {
+        final Listener<T> listener;
+        final CallHandle caller;
+        Runnable detach;
+
+        Waiter(Listener<T> listener, CallHandle caller) {
+            this.listener = listener;
+            this.caller = caller;
+        }
+    }
+
+    private static final class Flight<T> {
+        final List<Waiter<T>> waiting = new ArrayList<>(2);
+        final CallHandle handle = new CallHandle();
+    }
+
+    private final Map<String, Flight<T>> inFlight = new HashMap<>();
+
+    /**
+     * Runs {@code starter} unless a call for {@code key} is already in flight, and delivers
+     * its result to {@code listener} on the thread that completes it
+     *
+     * @param caller cancelling it detaches {@code listener} from the flight
+     */
+    void run(String key, CallHandle caller, Listener<T> listener, Starter<T> starter) {
+        Flight<T> flight;
+        boolean first = false;
+        Waiter<T> waiter = new Waiter<>(listener, caller);
+        synchronized (inFlight) {
+            flight = inFlight.get(key);
+            if (flight == null) {
+                flight = new Flight<>();
+                inFlight.put(key, flight);
+                first = true;
+            }
+            flight.waiting.add(waiter);
+        }
+        final Flight<T> joined = flight;
+        waiter.detach = () -> detach(key, joined, waiter);
+        caller.onCancel(waiter.detach);
+        if (!first || flight.handle.isCancelled()) {
+            return;
+        }
+
+        starter.start(flight.handle, new Listener<T>() {
+            @Override
+            public void onSuccess(T value) {
+                for (Waiter<T> waiting : finish(key, joined)) {
+                    waiting.listener.onSuccess(value);
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                for (Waiter<T> waiting : finish(key, joined)) {
+                    waiting.listener.onError(error);
+                }
+            }
+        });
+    }
+
+    private void detach(String key, Flight<T> flight, Waiter<T> waiter) {
+        boolean abandoned;
+        synchronized (inFlight) {
+            abandoned = flight.waiting.remove(waiter) && flight.waiting.isEmpty()
+                    && inFlight.get(key) == flight;
+            if (abandoned) {
+                inFlight.remove(key);
+            }
+        }
+        if (abandoned) {
+            flight.handle.cancel();
+        }
+    }
+
+    private List<Waiter<T>> finish(String key, Flight<T> flight) {
+        List<Waiter<T>> waiting;
+        synchronized (inFlight) {
+            // A later flight may already hold the key if this one was abandoned
+            if (inFlight.get(key) == flight) {
+                inFlight.remove(key);
+            }
+            waiting = new ArrayList<>(flight.waiting);
+            flight.waiting.clear();
+        }
+        // The callers may run further calls; they no longer need to detach from this one
+        for (Waiter<T> waiter : waiting) {
+            waiter.caller.removeOnCancel(waiter.detach);
+        }
+        flight.handle.complete();
+        return waiting;
+    }
+}
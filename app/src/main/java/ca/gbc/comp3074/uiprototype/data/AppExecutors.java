@@ -0,0 +1,98 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide executors for the data layer, shared by Room and every repository.
+ * <ul>
+ * <li>diskWrite: one thread, so all writes are serialized</li>
+ * <li>diskRead: a small pool; WAL lets these run alongside the writer</li>
+ * <li>background: non-database work such as startup initialization</li>
+ * <li>scheduled: one thread for delayed work such as waiting out a page token</li>
+ * </ul>
+ * Every pool lets its idle threads time out, including core threads, so nothing stays
+ * parked while the app is in the background. Android gives no reliable signal that the
+ * process is ending, so the pools are never shut down; they just shrink to zero threads.
+ */
+public final class AppExecutors {
+
+    private static final int READER_THREADS = Math.max(2,
+            Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int BACKGROUND_THREADS = 2;
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+
+    private static volatile AppExecutors INSTANCE;
+
+    private final ExecutorService diskWrite;
+    private final ExecutorService diskRead;
+    private final ExecutorService background;
+    private final ScheduledThreadPoolExecutor scheduled;
+
+    private AppExecutors() {
+        // At most one thread, so writes stay serialized; it still times out when idle
+        diskWrite = boundedPool(1, "db-write");
+        diskRead = boundedPool(READER_THREADS, "db-read");
+        background = boundedPool(BACKGROUND_THREADS, "background");
+        scheduled = new ScheduledThreadPoolExecutor(1, namedFactory("scheduled"));
+        scheduled.setKeepAliveTime(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        scheduled.allowCoreThreadTimeOut(true);
+        scheduled.setRemoveOnCancelPolicy(true);
+    }
+
+    public static AppExecutors getInstance() {
+        if (INSTANCE == null) {
+            synchronized (AppExecutors.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new AppExecutors();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public ExecutorService diskWrite() {
+        return diskWrite;
+    }
+
+    public ExecutorService diskRead() {
+        return diskRead;
+    }
+
+    public ExecutorService background() {
+        return background;
+    }
+
+    /**
+     * Keep tasks short; anything heavy should hop to another executor when it fires
+     */
+    public ScheduledExecutorService scheduled() {
+        return scheduled;
+    }
+
+    private static ExecutorService boundedPool(int threads, String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                namedFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory namedFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import android.location.Location;
+
+import ca.gbc.comp3074.uiprototype.api.PlaceDetailsFields;
+import ca.gbc.comp3074.uiprototype.utils.AppConfig;
+
+/**
+ * Freshness rules for cached Google data. Cached rows are always shown first; these
+ * checks only decide whether a background revalidation is worth a network call.
+ * TTLs per kind of data live in {@link AppConfig}.
+ */
+public final class CachePolicy {
+
+    private CachePolicy() {
+    }
+
+    public static boolean isFresh(long fetchedAt, long ttlMs, long now) {
+        return fetchedAt > 0 && now - fetchedAt < ttlMs;
+    }
+
+    /**
+     * Whether a nearby search made at (fetchedLat, fetchedLng) still covers the given
+     * point: it is younger than the nearby TTL and the user has not moved out of it.
+     */
+    public static boolean nearbyCovers(long fetchedAt, double fetchedLat, double fetchedLng,
+            double lat, double lng, long now) {
+        if (!isFresh(fetchedAt, AppConfig.NEARBY_CACHE_TTL_MS, now)) {
+            return false;
+        }
+        float[] distance = new float[1];
+        Location.distanceBetween(fetchedLat, fetchedLng, lat, lng, distance);
+        return distance[0] <= AppConfig.NEARBY_REFETCH_DISTANCE_METERS;
+    }
+
+    /**
+     * Stored details can be shown without refetching any of them
+     */
+    public static boolean detailsAreFresh(PlaceDetailsEntity details, long now) {
+        return staleDetailFields(details, now) == 0;
+    }
+
+    /**
+     * The {@link PlaceDetailsFields} groups of stored details that are past their TTL, or 0
+     * when all are fresh. Opening hours go stale much sooner than phone numbers, and
+     * reviews somewhere in between.
+     */
+    public static int staleDetailFields(PlaceDetailsEntity details, long now) {
+        if (details == null) {
+            return PlaceDetailsFields.ALL;
+        }
+        int stale = 0;
+        if (!isFresh(details.fetchedAt, AppConfig.DETAILS_CACHE_TTL_MS, now)) {
+            stale |= PlaceDetailsFields.BASIC | PlaceDetailsFields.CONTACT;
+        }
+        if (!isFresh(details.hoursFetchedAt, AppConfig.HOURS_CACHE_TTL_MS, now)) {
+            stale |= PlaceDetailsFields.HOURS;
+        }
+        if (!isFresh(details.reviewsFetchedAt, AppConfig.REVIEWS_CACHE_TTL_MS, now)) {
+            stale |= PlaceDetailsFields.REVIEWS;
+        }
+        return stale;
+    }
+}
@@ -3,32 +3,54 @@ package ca.gbc.comp3074.uiprototype.data;
 import androidx.room.TypeConverter;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Converters {
-    private static final String DELIMITER = "|";
+    private static final char DELIMITER = '|';
+
+    // Tags come from a small vocabulary, so rows share a handful of distinct strings.
+    // Decoded lists are cached per string; the cap only guards against unexpected data.
+    private static final int MAX_CACHED_TAG_LISTS = 256;
+    private static final ConcurrentHashMap<String, List<String>> decodedTags = new ConcurrentHashMap<>();
 
     @TypeConverter
     public String fromStringList(List<String> values) {
         if (values == null || values.isEmpty()) {
             return "";
         }
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < values.size(); i++) {
-            builder.append(values.get(i));
-            if (i < values.size() - 1) {
-                builder.append(DELIMITER);
-            }
-        }
-        return builder.toString();
+        return String.join(String.valueOf(DELIMITER), values);
     }
 
+    /**
+     * Returns a shared, unmodifiable list; assign a new list instead of editing it
+     */
     @TypeConverter
     public List<String> toStringList(String value) {
         if (value == null || value.isEmpty()) {
-            return new ArrayList<>();
+            return Collections.emptyList();
+        }
+        List<String> cached = decodedTags.get(value);
+        if (cached != null) {
+            return cached;
+        }
+        List<String> decoded = Collections.unmodifiableList(split(value));
+        if (decodedTags.size() < MAX_CACHED_TAG_LISTS) {
+            decodedTags.putIfAbsent(value, decoded);
+        }
+        return decoded;
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>(4);
+        int start = 0;
+        int end;
+        while ((end = value.indexOf(DELIMITER, start)) >= 0) {
+            parts.add(value.substring(start, end));
+            start = end + 1;
         }
-        return new ArrayList<>(Arrays.asList(value.split("\\|")));
+        parts.add(value.substring(start));
+        return parts;
     }
 }
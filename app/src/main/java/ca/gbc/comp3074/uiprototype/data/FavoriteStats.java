@@ -0,0 +1,12 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+/**
+ * Aggregate counts shown in the favorites header, computed in SQL
+ * so the screen does not need every favorite in memory.
+ */
+public class FavoriteStats {
+
+    public int favoriteCount;
+    public int totalCheckins;
+    public int totalReviews;
+}
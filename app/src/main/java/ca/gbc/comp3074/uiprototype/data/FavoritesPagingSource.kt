@@ -0,0 +1,77 @@
+package ca.gbc.comp3074.uiprototype.data
+
+import androidx.paging.PagingSource
+import androidx.paging.PagingState
+import androidx.room.InvalidationTracker
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Keyset-paginated favorites ordered by (rating DESC, id ASC).
+ * Each page continues from the last row of the previous one instead of using OFFSET,
+ * so deep pages cost the same as the first. Invalidates itself when the places table changes.
+ */
+class FavoritesPagingSource(
+    private val database: QuietSpaceDatabase
+) : PagingSource<FavoritesPagingSource.Key, PlaceSummary>() {
+
+    /**
+     * Position of a boundary row; forward pages load rows after it, backward pages rows before it
+     */
+    data class Key(val rating: Float, val id: Int, val forward: Boolean)
+
+    private val observerRegistered = AtomicBoolean(false)
+
+    private val observer = object : InvalidationTracker.Observer(arrayOf("places")) {
+        override fun onInvalidated(tables: Set<String>) {
+            invalidate()
+        }
+    }
+
+    override suspend fun load(params: LoadParams<Key>): LoadResult<Key, PlaceSummary> =
+        withContext(Dispatchers.IO) {
+            registerObserverIfNeeded()
+            val dao = database.placeDao()
+            val key = params.key
+            val limit = params.loadSize
+
+            val items = when {
+                key == null -> dao.getFavoritesFirstPage(limit)
+                key.forward -> dao.getFavoritesAfter(key.rating, key.id, limit)
+                else -> dao.getFavoritesBefore(key.rating, key.id, limit).asReversed()
+            }
+
+            val first = items.firstOrNull()
+            val last = items.lastOrNull()
+            val prevKey = when {
+                key == null || first == null -> null
+                params is LoadParams.Prepend && items.size < limit -> null
+                else -> Key(first.rating, first.id, false)
+            }
+            val nextKey = when {
+                last == null -> null
+                params !is LoadParams.Prepend && items.size < limit -> null
+                else -> Key(last.rating, last.id, true)
+            }
+            LoadResult.Page(items, prevKey, nextKey)
+        }
+
+    override fun getRefreshKey(state: PagingState<Key, PlaceSummary>): Key? {
+        // Restart half a page above the anchor so the visible rows survive the refresh
+        val anchor = state.anchorPosition ?: return null
+        val start = anchor - state.config.initialLoadSize / 2
+        if (start <= 0) return null
+        val before = state.closestItemToPosition(start - 1) ?: return null
+        return Key(before.rating, before.id, true)
+    }
+
+    private fun registerObserverIfNeeded() {
+        if (observerRegistered.compareAndSet(false, true)) {
+            database.invalidationTracker.addObserver(observer)
+            registerInvalidatedCallback {
+                database.invalidationTracker.removeObserver(observer)
+            }
+        }
+    }
+}
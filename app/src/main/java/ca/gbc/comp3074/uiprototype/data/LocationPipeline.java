@@ -0,0 +1,206 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.maps.LocationSource;
+import com.google.android.gms.maps.model.LatLng;
+
+/**
+ * The app's single source of location updates while a map is on screen. It asks for
+ * balanced, batched updates while the map is only being looked at, and for high
+ * accuracy while a route is shown. Nothing is requested while the map is hidden.
+ * Fixes closer than the mode's smallest displacement are never delivered, so a user
+ * who is not moving causes almost no wakeups.
+ *
+ * Downstream refreshes are fed only once the user has moved past the refresh distance
+ * from the last fetch center. It also serves as the map's {@link LocationSource}, so
+ * the my-location layer does not keep a high accuracy request of its own.
+ *
+ * Everything here runs on the main thread.
+ */
+public class LocationPipeline implements LocationSource {
+    private static final String TAG = "LocationPipeline";
+
+    private static final int MODE_OFF = 0;
+    // Map visible: wifi and cell accuracy, delivered in batches
+    private static final int MODE_BALANCED = 1;
+    // Route shown: GPS, delivered straight away
+    private static final int MODE_HIGH_ACCURACY = 2;
+
+    private static final long BALANCED_INTERVAL_MS = 30_000;
+    private static final long BALANCED_FASTEST_INTERVAL_MS = 15_000;
+    // Fixes are held back and handed over together, so the radio wakes the app less often
+    private static final long BALANCED_MAX_DELAY_MS = 60_000;
+    private static final float BALANCED_MIN_DISPLACEMENT_METERS = 25f;
+    private static final long HIGH_ACCURACY_INTERVAL_MS = 5_000;
+    private static final long HIGH_ACCURACY_FASTEST_INTERVAL_MS = 2_000;
+    private static final float HIGH_ACCURACY_MIN_DISPLACEMENT_METERS = 5f;
+
+    /**
+     * Receives the locations the pipeline lets through
+     */
+    public interface Listener {
+        /**
+         * Every delivered fix, for things that track the user closely such as a marker
+         */
+        void onLocation(LatLng location);
+
+        /**
+         * The user is now further than the refresh distance from the last fetch center;
+         * this location is the new fetch center
+         */
+        void onRefreshLocation(LatLng location);
+    }
+
+    private final Context context;
+    private final FusedLocationProviderClient client;
+    private final float refreshDistanceMeters;
+    private final Listener listener;
+    private final LocationCallback callback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            // Batched results hold several fixes; only the newest matters
+            Location location = result.getLastLocation();
+            if (location != null) {
+                deliver(location);
+            }
+        }
+    };
+
+    private boolean mapVisible;
+    private boolean navigating;
+    private int mode = MODE_OFF;
+    private LatLng fetchCenter;
+    private Location lastLocation;
+    private OnLocationChangedListener mapLocationListener;
+
+    public LocationPipeline(Context context, float refreshDistanceMeters, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.client = LocationServices.getFusedLocationProviderClient(this.context);
+        this.refreshDistanceMeters = refreshDistanceMeters;
+        this.listener = listener;
+    }
+
+    public void setMapVisible(boolean visible) {
+        mapVisible = visible;
+        applyMode(false);
+    }
+
+    public void setNavigating(boolean navigating) {
+        this.navigating = navigating;
+        applyMode(false);
+    }
+
+    /**
+     * Requests updates again, e.g. once location permission has been granted
+     */
+    public void restart() {
+        applyMode(true);
+    }
+
+    /**
+     * Records a fetch made from outside the pipeline, so it is not repeated for the
+     * next nearby fix
+     */
+    public void setFetchCenter(LatLng center) {
+        fetchCenter = center;
+    }
+
+    @Override
+    public void activate(@NonNull OnLocationChangedListener listener) {
+        mapLocationListener = listener;
+        if (lastLocation != null) {
+            listener.onLocationChanged(lastLocation);
+        }
+    }
+
+    @Override
+    public void deactivate() {
+        mapLocationListener = null;
+    }
+
+    private int desiredMode() {
+        if (!mapVisible) {
+            return MODE_OFF;
+        }
+        return navigating ? MODE_HIGH_ACCURACY : MODE_BALANCED;
+    }
+
+    @SuppressLint("MissingPermission")
+    private void applyMode(boolean force) {
+        int desired = desiredMode();
+        if (desired == mode && !force) {
+            return;
+        }
+        client.removeLocationUpdates(callback);
+        mode = MODE_OFF;
+        if (desired == MODE_OFF) {
+            return;
+        }
+        if (!hasPermission(desired)) {
+            Log.d(TAG, "No location permission, updates stay off");
+            return;
+        }
+        client.requestLocationUpdates(requestFor(desired), callback, Looper.getMainLooper());
+        mode = desired;
+    }
+
+    private boolean hasPermission(int mode) {
+        if (ContextCompat.checkSelfPermission(context,
+                Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
+            return true;
+        }
+        // Coarse location is enough for balanced updates
+        return mode == MODE_BALANCED && ContextCompat.checkSelfPermission(context,
+                Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private static LocationRequest requestFor(int mode) {
+        if (mode == MODE_HIGH_ACCURACY) {
+            return new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, HIGH_ACCURACY_INTERVAL_MS)
+                    .setMinUpdateIntervalMillis(HIGH_ACCURACY_FASTEST_INTERVAL_MS)
+                    .setMinUpdateDistanceMeters(HIGH_ACCURACY_MIN_DISPLACEMENT_METERS)
+                    .build();
+        }
+        return new LocationRequest.Builder(Priority.PRIORITY_BALANCED_POWER_ACCURACY, BALANCED_INTERVAL_MS)
+                .setMinUpdateIntervalMillis(BALANCED_FASTEST_INTERVAL_MS)
+                .setMinUpdateDistanceMeters(BALANCED_MIN_DISPLACEMENT_METERS)
+                .setMaxUpdateDelayMillis(BALANCED_MAX_DELAY_MS)
+                .build();
+    }
+
+    private void deliver(Location location) {
+        lastLocation = location;
+        if (mapLocationListener != null) {
+            mapLocationListener.onLocationChanged(location);
+        }
+        LatLng position = new LatLng(location.getLatitude(), location.getLongitude());
+        listener.onLocation(position);
+
+        if (fetchCenter != null) {
+            float[] distance = new float[1];
+            Location.distanceBetween(fetchCenter.latitude, fetchCenter.longitude,
+                    position.latitude, position.longitude, distance);
+            if (distance[0] <= refreshDistanceMeters) {
+                return;
+            }
+        }
+        fetchCenter = position;
+        listener.onRefreshLocation(position);
+    }
+}
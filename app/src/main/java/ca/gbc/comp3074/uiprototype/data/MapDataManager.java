@@ -10,141 +10,272 @@ import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Observer;
+import androidx.lifecycle.Transformations;
 
+import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Marker;
-import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.clustering.ClusterManager;
 
+import ca.gbc.comp3074.uiprototype.api.CallHandle;
 import ca.gbc.comp3074.uiprototype.api.GooglePlacesService;
+import ca.gbc.comp3074.uiprototype.api.QuotaManager;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MapDataManager {
     private static final String TAG = "MapDataManager";
     private static final int DEFAULT_SEARCH_RADIUS = 5000; // 5km radius
+    private static final int MAX_MARKERS_IN_VIEWPORT = 300;
+    // Pages per place type to fill in after the first; each costs a request per tile
+    private static final int MAX_RESULT_PAGES = 2;
+    // Space kept around a cluster's places when zooming into it
+    private static final int CLUSTER_PADDING_PX = 120;
 
     private final PlaceRepository placeRepository;
     private final GooglePlacesService placesService;
-    private final MutableLiveData<List<PlaceEntity>> placesLiveData = new MutableLiveData<>();
-    private final Map<String, PlaceEntity> markerToPlaceMap = new HashMap<>();
+    private final MutableLiveData<LatLng> searchCenter = new MutableLiveData<>();
+    // The part of the map on screen, and the stored places inside it
+    private final MutableLiveData<LatLngBounds> viewport = new MutableLiveData<>();
+    private final LiveData<List<PlaceSummary>> viewportPlaces;
+    private final Context context;
     private GoogleMap googleMap;
-    private Observer<List<PlaceEntity>> placesObserver;
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private ClusterManager<PlaceClusterItem> clusterManager;
+    private PlaceClusterRenderer clusterRenderer;
+    private ViewportLoader viewportLoader;
+    // Items handed to the cluster manager, by place key; only replaced on the main thread
+    private volatile Map<String, PlaceClusterItem> shownItems = Collections.emptyMap();
+    private OnPlaceClickListener placeClickListener;
+    private Observer<List<PlaceSummary>> placesObserver;
+    private final ExecutorService executorService = AppExecutors.getInstance().background();
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // One nearby search at a time; location updates during a search reuse its results
+    private final AtomicBoolean refreshInFlight = new AtomicBoolean(false);
+    private volatile CallHandle refreshCall;
+    // Pagers filling in later result pages for the last search
+    private final List<GooglePlacesService.NearbyPager> morePagers = new ArrayList<>();
 
     // Current location for searches
     private LatLng currentLocation;
 
+    /**
+     * A place marker was tapped
+     */
+    public interface OnPlaceClickListener {
+        void onPlaceClick(PlaceSummary place);
+    }
+
     public MapDataManager(Context context) {
+        this.context = context;
         try {
-            placeRepository = new PlaceRepository((android.app.Application) context.getApplicationContext());
+            placeRepository = PlaceRepository.getInstance((android.app.Application) context.getApplicationContext());
             placesService = new GooglePlacesService();
+            viewportPlaces = Transformations.switchMap(viewport, bounds -> placeRepository.getPlacesInBounds(
+                    bounds.southwest.latitude, bounds.southwest.longitude,
+                    bounds.northeast.latitude, bounds.northeast.longitude,
+                    MAX_MARKERS_IN_VIEWPORT));
 
             // Set default location (Toronto) if no current location
             currentLocation = new LatLng(43.6532, -79.3832);
+            searchCenter.setValue(currentLocation);
         } catch (Exception e) {
             Log.e(TAG, "Error initializing MapDataManager", e);
             throw new RuntimeException("Failed to initialize MapDataManager: " + e.getMessage(), e);
         }
     }
 
-    public LiveData<List<PlaceEntity>> getPlaces() {
+    public LiveData<List<PlaceSummary>> getPlaces() {
         return placeRepository.getAllPlaces();
     }
 
+    /**
+     * The closest cached places to the current location, nearest first
+     */
+    public LiveData<List<PlaceSummary>> getNearbyPlaces(int limit) {
+        return Transformations.switchMap(searchCenter, center -> placeRepository.getNearestPlaces(
+                center.latitude, center.longitude, DEFAULT_SEARCH_RADIUS / 1000.0, limit));
+    }
+
     public void setGoogleMap(GoogleMap map) {
         this.googleMap = map;
+        if (map != null) {
+            setUpClusters(map);
+        }
         loadPlacesOnMap();
     }
 
+    public void setOnPlaceClickListener(OnPlaceClickListener listener) {
+        this.placeClickListener = listener;
+    }
+
+    /**
+     * Places are drawn through a ClusterManager: it groups nearby places per zoom level on
+     * a background thread, so a dense area costs a handful of markers instead of hundreds
+     */
+    private void setUpClusters(GoogleMap map) {
+        clusterManager = new ClusterManager<>(context, map);
+        shownItems = Collections.emptyMap();
+        clusterRenderer = new PlaceClusterRenderer(context, map, clusterManager);
+        clusterManager.setRenderer(clusterRenderer);
+        viewportLoader = new ViewportLoader(placesService, placeRepository, map, viewport::setValue);
+        map.setOnCameraIdleListener(() -> {
+            clusterManager.onCameraIdle();
+            viewportLoader.onCameraIdle();
+        });
+        map.setOnMarkerClickListener(clusterManager);
+        map.setOnInfoWindowClickListener(clusterManager);
+
+        clusterManager.setOnClusterClickListener(cluster -> {
+            // Zoom in until the cluster splits
+            LatLngBounds.Builder builder = LatLngBounds.builder();
+            for (ClusterItem item : cluster.getItems()) {
+                builder.include(item.getPosition());
+            }
+            map.animateCamera(CameraUpdateFactory.newLatLngBounds(builder.build(), CLUSTER_PADDING_PX));
+            return true;
+        });
+        clusterManager.setOnClusterItemClickListener(item -> {
+            if (placeClickListener == null) {
+                return false;
+            }
+            placeClickListener.onPlaceClick(item.getPlace());
+            return true;
+        });
+    }
+
     /**
-     * Update current location and refresh places
+     * Update current location. Cached places for it are served straight from Room; Google
+     * is only asked again when the cache is stale or the user left the area it covers.
      */
     public void updateLocation(LatLng location) {
         this.currentLocation = location;
-        refreshPlacesFromGoogle();
+        searchCenter.setValue(location);
+        placeRepository.isNearbyCacheFreshAsync(location.latitude, location.longitude)
+                .thenAccept(fresh -> mainHandler.post(() -> {
+                    if (location != currentLocation) {
+                        // A newer location has taken over and runs its own check
+                        return;
+                    }
+                    if (fresh) {
+                        Log.d(TAG, "Nearby cache still covers this location, skipping Google search");
+                        return;
+                    }
+                    refreshPlacesFromGoogle();
+                }));
     }
 
     /**
-     * Fetch places from Google Places API
+     * Fetch places from Google Places API, regardless of cache freshness
      */
     public void refreshPlacesFromGoogle() {
         if (currentLocation == null) {
             Log.w(TAG, "No current location set, using default");
             currentLocation = new LatLng(43.6532, -79.3832); // Toronto default
         }
+        if (!refreshInFlight.compareAndSet(false, true)) {
+            Log.d(TAG, "Nearby search already running");
+            return;
+        }
+        final LatLng fetchCenter = currentLocation;
 
         Log.d(TAG,
                 "Fetching places from Google API near: " + currentLocation.latitude + ", " + currentLocation.longitude);
 
-        placesService.searchQuietPlaces(
-                currentLocation.latitude,
-                currentLocation.longitude,
+        refreshCall = placesService.searchQuietPlaces(
+                fetchCenter.latitude,
+                fetchCenter.longitude,
                 DEFAULT_SEARCH_RADIUS,
-                new GooglePlacesService.PlacesCallback() {
+                new GooglePlacesService.NearbySearchCallback() {
                     @Override
-                    public void onSuccess(List<GooglePlacesService.GooglePlace> googlePlaces) {
-                        Log.d(TAG, "Received " + googlePlaces.size() + " places from Google API");
+                    public void onSuccess(List<GooglePlacesService.GooglePlace> googlePlaces, boolean complete,
+                            boolean cached) {
+                        Log.d(TAG, "Received " + googlePlaces.size() + " places from Google API"
+                                + (complete ? "" : " (some place types failed)"));
 
                         // Convert Google Places to our entities
                         List<PlaceEntity> placeEntities = PlaceDataConverter
                                 .convertGooglePlacesToEntities(googlePlaces);
 
-                        // Save to local database and update map
-                        executorService.execute(() -> {
-                            // Get existing favorites to preserve them
-                            List<PlaceEntity> existingPlaces = placeRepository.getAllPlacesSync();
-                            java.util.Map<String, PlaceEntity> favoriteMap = new java.util.HashMap<>();
-                            for (PlaceEntity existing : existingPlaces) {
-                                if (existing.favorite && existing.googlePlaceId != null) {
-                                    favoriteMap.put(existing.googlePlaceId, existing);
-                                }
-                            }
-
-                            // Delete only non-favorite places before adding new ones
-                            placeRepository.deleteAllPlaces();
-
-                            // Re-insert favorites first
-                            for (PlaceEntity favorite : favoriteMap.values()) {
-                                placeRepository.insertPlace(favorite);
-                            }
-
-                            // Now insert new places from Google, preserving favorite status if they exist
-                            for (PlaceEntity place : placeEntities) {
-                                if (place.googlePlaceId != null && favoriteMap.containsKey(place.googlePlaceId)) {
-                                    // This place is a favorite, preserve its favorite status
-                                    PlaceEntity favorite = favoriteMap.get(place.googlePlaceId);
-                                    place.favorite = true;
-                                    place.id = favorite.id; // Keep the same ID
-                                    place.checkins = favorite.checkins; // Preserve checkins
-                                    place.lastVisited = favorite.lastVisited; // Preserve last visited
-                                }
-                                placeRepository.insertPlace(place);
-                            }
-
-                            // Update map on main thread
-                            mainHandler.post(() -> {
-                                updateMarkersFromPlaces(placeEntities);
-                                placesLiveData.setValue(placeEntities);
-                            });
-                        });
+                        // Merge into the local database in a single transaction; the Room
+                        // observer redraws the map once the write commits. Only a complete
+                        // answer prunes, inside the circle Google searched: around the
+                        // snapped tile center, not the raw location.
+                        if (complete) {
+                            double[] searched = GooglePlacesService.searchCenter(fetchCenter.latitude,
+                                    fetchCenter.longitude, DEFAULT_SEARCH_RADIUS);
+                            placeRepository.replaceNearbyResults(placeEntities, searched[0], searched[1],
+                                    DEFAULT_SEARCH_RADIUS, fetchCenter.latitude, fetchCenter.longitude);
+                        } else {
+                            // A partial answer should be retried on the next location update
+                            placeRepository.upsertNearbyPlaces(placeEntities);
+                        }
+                        refreshInFlight.set(false);
+                        if (!cached) {
+                            // Cached first pages may carry expired tokens, and their later
+                            // pages were prefetched when they were fetched
+                            loadMorePages(fetchCenter);
+                        }
                     }
 
                     @Override
                     public void onError(String error) {
                         Log.e(TAG, "Error fetching places from Google: " + error);
+                        refreshInFlight.set(false);
                         // Fall back to local data
-                        loadPlacesOnMap();
+                        mainHandler.post(MapDataManager.this::loadPlacesOnMap);
                     }
                 });
     }
 
+    /**
+     * Streams later result pages of each place type into Room once the first pages are
+     * on the map. The first page of each pager comes straight from the tile cache.
+     */
+    private void loadMorePages(LatLng center) {
+        synchronized (morePagers) {
+            cancelMorePages();
+            for (String type : GooglePlacesService.getQuietPlaceTypes()) {
+                GooglePlacesService.NearbyPager pager = placesService.pageNearbySearch(
+                        center.latitude, center.longitude, DEFAULT_SEARCH_RADIUS, type,
+                        QuotaManager.PRIORITY_PREFETCH, new GooglePlacesService.PageCallback() {
+                            @Override
+                            public void onPage(List<GooglePlacesService.GooglePlace> places, int page,
+                                    boolean hasMore) {
+                                if (page > 1) {
+                                    // Partial by nature, so nothing is pruned
+                                    placeRepository.upsertNearbyPlaces(
+                                            PlaceDataConverter.convertGooglePlacesToEntities(places));
+                                }
+                            }
+
+                            @Override
+                            public void onError(String error) {
+                                Log.w(TAG, "Could not load more " + type + " results: " + error);
+                            }
+                        });
+                morePagers.add(pager);
+                pager.loadPages(MAX_RESULT_PAGES);
+            }
+        }
+    }
+
+    private void cancelMorePages() {
+        synchronized (morePagers) {
+            for (GooglePlacesService.NearbyPager pager : morePagers) {
+                pager.cancel();
+            }
+            morePagers.clear();
+        }
+    }
+
     /**
      * Search for specific types of places
      */
@@ -162,84 +293,97 @@ public class MapDataManager {
                 callback);
     }
 
+    /**
+     * Keeps the map in step with the stored places inside the viewport, so markers stay
+     * bounded by what is on screen however far the user pans
+     */
     public void observePlaces(LifecycleOwner lifecycleOwner) {
         // Remove any existing observer to prevent memory leaks
         if (placesObserver != null) {
-            placeRepository.getAllPlaces().removeObserver(placesObserver);
+            viewportPlaces.removeObserver(placesObserver);
             placesObserver = null;
         }
 
         // Create a new lifecycle-aware observer
         placesObserver = places -> {
             if (places != null && googleMap != null) {
-                // Process markers in background to avoid UI blocking
-                executorService.execute(() -> {
-                    final List<PlaceEntity> placesCopy = new ArrayList<>(places);
-                    mainHandler.post(() -> updateMarkersFromPlaces(placesCopy));
-                });
+                showPlaces(places);
             }
         };
 
         // Observe with lifecycle
-        placeRepository.getAllPlaces().observe(lifecycleOwner, placesObserver);
+        viewportPlaces.observe(lifecycleOwner, placesObserver);
     }
 
     private void loadPlacesOnMap() {
-        if (googleMap == null)
+        if (googleMap == null || viewportLoader == null)
             return;
 
-        // Clear existing markers
-        googleMap.clear();
-        markerToPlaceMap.clear();
+        // Query Room for the current viewport and fetch the tiles it is missing
+        viewportLoader.loadNow();
+    }
 
-        // Load current places in background
+    /**
+     * Brings the map in line with this list of places. The diff against what is shown
+     * is computed in background; the main thread then adds, removes and updates only
+     * the places that differ, and does nothing at all when none do.
+     */
+    private void showPlaces(List<PlaceSummary> places) {
+        final Map<String, PlaceClusterItem> base = shownItems;
         executorService.execute(() -> {
-            final List<PlaceEntity> places = placeRepository.getAllPlacesSync();
-            if (places != null && googleMap != null) {
-                mainHandler.post(() -> updateMarkersFromPlaces(places));
-            }
+            PlaceMarkerDiff diff = PlaceMarkerDiff.compute(base, places);
+            mainHandler.post(() -> applyDiff(diff, places));
         });
     }
 
-    private void updateMarkersFromPlaces(List<PlaceEntity> places) {
-        if (googleMap == null || places == null)
+    private void applyDiff(PlaceMarkerDiff diff, List<PlaceSummary> places) {
+        if (googleMap == null || clusterManager == null)
+            return;
+        if (diff.base != shownItems) {
+            // Another update landed first; diff again against it
+            showPlaces(places);
             return;
-
-        // Process in batches to avoid UI lag
-        final int BATCH_SIZE = 10;
-        final List<List<PlaceEntity>> batches = new ArrayList<>();
-
-        // Create batches
-        for (int i = 0; i < places.size(); i += BATCH_SIZE) {
-            batches.add(places.subList(i, Math.min(i + BATCH_SIZE, places.size())));
         }
 
-        // Process each batch with a delay
-        for (int i = 0; i < batches.size(); i++) {
-            final List<PlaceEntity> batch = batches.get(i);
-            mainHandler.postDelayed(() -> addMarkersBatch(batch), i * 100);
+        shownItems = diff.result;
+        if (diff.isEmpty())
+            return;
+        if (!diff.removed.isEmpty()) {
+            clusterManager.removeItems(diff.removed);
+        }
+        if (!diff.added.isEmpty()) {
+            clusterManager.addItems(diff.added);
         }
+        // Equal to the items they replace, so their markers are moved and relabelled in place
+        for (PlaceClusterItem item : diff.changed) {
+            clusterManager.updateItem(item);
+        }
+        clusterManager.cluster();
     }
 
-    private void addMarkersBatch(List<PlaceEntity> batch) {
-        if (googleMap == null)
-            return;
+    /**
+     * The place behind a marker, or null for clusters and markers drawn by others
+     */
+    public PlaceSummary getPlaceForMarker(Marker marker) {
+        PlaceClusterItem item = clusterRenderer != null ? clusterRenderer.getClusterItem(marker) : null;
+        return item != null ? item.getPlace() : null;
+    }
 
-        for (PlaceEntity place : batch) {
-            LatLng location = new LatLng(place.latitude, place.longitude);
-            Marker marker = googleMap.addMarker(new MarkerOptions()
-                    .position(location)
-                    .title(place.name)
-                    .snippet(place.type + " • " + place.rating + "★"));
+    /**
+     * Highlights the place at this position, if it is on the map
+     */
+    public void selectPlaceAt(LatLng position) {
+        if (clusterRenderer == null)
+            return;
 
-            if (marker != null) {
-                markerToPlaceMap.put(marker.getId(), place);
+        PlaceClusterItem selected = null;
+        for (PlaceClusterItem item : shownItems.values()) {
+            if (item.getPosition().equals(position)) {
+                selected = item;
+                break;
             }
         }
-    }
-
-    public PlaceEntity getPlaceForMarker(Marker marker) {
-        return markerToPlaceMap.get(marker.getId());
+        clusterRenderer.setSelected(selected);
     }
 
     public void addPlace(PlaceEntity place) {
@@ -250,13 +394,34 @@ public class MapDataManager {
 
     public void cleanup() {
         // Clean up resources to avoid memory leaks
+        CallHandle refresh = refreshCall;
+        if (refresh != null) {
+            // A cancelled search never calls back, so release the in-flight flag here
+            refresh.cancel();
+            refreshInFlight.set(false);
+        }
+        cancelMorePages();
+        if (viewportLoader != null) {
+            viewportLoader.cancel();
+            viewportLoader = null;
+        }
         if (placesObserver != null) {
-            placeRepository.getAllPlaces().removeObserver(placesObserver);
+            viewportPlaces.removeObserver(placesObserver);
             placesObserver = null;
         }
 
-        executorService.shutdown();
+        if (googleMap != null) {
+            googleMap.setOnCameraIdleListener(null);
+            googleMap.setOnMarkerClickListener(null);
+            googleMap.setOnInfoWindowClickListener(null);
+        }
+        if (clusterManager != null) {
+            clusterManager.clearItems();
+            clusterManager = null;
+        }
+        clusterRenderer = null;
+        shownItems = Collections.emptyMap();
+        placeClickListener = null;
         googleMap = null;
-        markerToPlaceMap.clear();
     }
 }
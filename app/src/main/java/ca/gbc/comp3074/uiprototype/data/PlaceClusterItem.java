@@ -0,0 +1,87 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.ClusterItem;
+
+/**
+ * A place on the home map. Keeps the summary it was built from, so a tapped marker or
+ * info window leads straight back to the place. Items are equal when they stand for the
+ * same place, so a refreshed copy replaces the marker of the old one instead of adding
+ * a second.
+ */
+public final class PlaceClusterItem implements ClusterItem {
+    private final String key;
+    private final PlaceSummary place;
+    private final LatLng position;
+    private final String snippet;
+
+    public PlaceClusterItem(PlaceSummary place) {
+        this.key = keyOf(place);
+        this.place = place;
+        this.position = new LatLng(place.latitude, place.longitude);
+        this.snippet = place.type + " • " + place.rating + "★";
+    }
+
+    /**
+     * Google place id, or the row id for places Google does not know
+     */
+    public static String keyOf(PlaceSummary place) {
+        return place.googlePlaceId != null && !place.googlePlaceId.isEmpty()
+                ? place.googlePlaceId : "id:" + place.id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public PlaceSummary getPlace() {
+        return place;
+    }
+
+    /**
+     * Whether the marker would look the same for both items
+     */
+    boolean hasSameContent(PlaceClusterItem other) {
+        return position.equals(other.position)
+                && place.name.equals(other.place.name)
+                && place.emoji.equals(other.place.emoji)
+                && snippet.equals(other.snippet);
+    }
+
+    @NonNull
+    @Override
+    public LatLng getPosition() {
+        return position;
+    }
+
+    @Nullable
+    @Override
+    public String getTitle() {
+        return place.name;
+    }
+
+    @Nullable
+    @Override
+    public String getSnippet() {
+        return snippet;
+    }
+
+    @Nullable
+    @Override
+    public Float getZIndex() {
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PlaceClusterItem && key.equals(((PlaceClusterItem) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+}
@@ -0,0 +1,62 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.maps.android.clustering.ClusterManager;
+import com.google.maps.android.clustering.view.DefaultClusterRenderer;
+
+/**
+ * Draws places as pins showing their category emoji, red normally and green for the
+ * selected place, with icons shared through {@link PlaceMarkerIcons}. Clustering, the
+ * per-zoom cluster cache and the split and merge animations come from
+ * {@link DefaultClusterRenderer}.
+ */
+class PlaceClusterRenderer extends DefaultClusterRenderer<PlaceClusterItem> {
+    private final PlaceMarkerIcons icons = PlaceMarkerIcons.get();
+
+    private PlaceClusterItem selected;
+
+    PlaceClusterRenderer(Context context, GoogleMap map, ClusterManager<PlaceClusterItem> clusterManager) {
+        super(context, map, clusterManager);
+    }
+
+    /**
+     * Highlights one place, or none for null. A place hidden in a cluster shows as
+     * selected once the cluster splits.
+     */
+    void setSelected(PlaceClusterItem item) {
+        PlaceClusterItem previous = selected;
+        selected = item;
+        updateIcon(previous);
+        updateIcon(item);
+    }
+
+    @Override
+    protected void onBeforeClusterItemRendered(@NonNull PlaceClusterItem item, @NonNull MarkerOptions markerOptions) {
+        super.onBeforeClusterItemRendered(item, markerOptions);
+        markerOptions.icon(iconFor(item));
+    }
+
+    @Override
+    protected void onClusterItemUpdated(@NonNull PlaceClusterItem item, @NonNull Marker marker) {
+        super.onClusterItemUpdated(item, marker);
+        marker.setIcon(iconFor(item));
+    }
+
+    private void updateIcon(PlaceClusterItem item) {
+        Marker marker = item != null ? getMarker(item) : null;
+        if (marker != null) {
+            marker.setIcon(iconFor(item));
+        }
+    }
+
+    private BitmapDescriptor iconFor(PlaceClusterItem item) {
+        return icons.icon(item.getPlace().emoji, item.equals(selected));
+    }
+}
@@ -1,26 +1,213 @@
 package ca.gbc.comp3074.uiprototype.data;
 
+import android.location.Location;
+
 import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
+import androidx.room.Upsert;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Dao
 public interface PlaceDao {
 
-    @Query("SELECT * FROM places ORDER BY rating DESC")
-    LiveData<List<PlaceEntity>> getAllPlaces();
+    // Half-widths, in degrees of latitude, of the windows tried by getNearest
+    double NEAREST_START_SPAN_DEGREES = 0.05;
+    double NEAREST_MAX_SPAN_DEGREES = 3.2;
+
+    // Stay under SQLite's bound-variable limit for IN (...) lists
+    int MAX_BIND_ARGS = 500;
+
+    // Columns read into PlaceSummary by the list and map queries
+    String SUMMARY_COLUMNS = "id, googlePlaceId, name, type, distance, rating, reviewCount, favorite, "
+            + "checkins, lastVisited, emoji, tags, latitude, longitude";
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places ORDER BY rating DESC")
+    LiveData<List<PlaceSummary>> getAllPlaces();
 
     @Query("SELECT * FROM places ORDER BY rating DESC")
     List<PlaceEntity> getAllPlacesSync();
 
-    @Query("SELECT * FROM places WHERE favorite = 1 ORDER BY rating DESC")
-    LiveData<List<PlaceEntity>> getFavoritePlaces();
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places WHERE favorite = 1 ORDER BY rating DESC")
+    LiveData<List<PlaceSummary>> getFavoritePlaces();
+
+    @Query("SELECT COUNT(*) AS favoriteCount, COALESCE(SUM(checkins), 0) AS totalCheckins, "
+            + "COALESCE(SUM(reviewCount), 0) AS totalReviews FROM places WHERE favorite = 1")
+    LiveData<FavoriteStats> getFavoriteStats();
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places ORDER BY rating DESC, id ASC LIMIT :limit")
+    LiveData<List<PlaceSummary>> getTopPlaces(int limit);
+
+    // Places carrying every tag in mask (PlaceTags bits); walks the rating index and stops at limit
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places WHERE (tagMask & :mask) = :mask "
+            + "ORDER BY rating DESC LIMIT :limit")
+    List<PlaceSummary> getPlacesWithAllTags(int mask, int limit);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places WHERE (tagMask & :mask) = :mask "
+            + "ORDER BY rating DESC LIMIT :limit")
+    LiveData<List<PlaceSummary>> observePlacesWithAllTags(int mask, int limit);
+
+    // Keyset pages of favorites in (rating DESC, id ASC) order, see FavoritesPagingSource
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places WHERE favorite = 1 "
+            + "ORDER BY rating DESC, id ASC LIMIT :limit")
+    List<PlaceSummary> getFavoritesFirstPage(int limit);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places WHERE favorite = 1 "
+            + "AND (rating < :rating OR (rating = :rating AND id > :id)) "
+            + "ORDER BY rating DESC, id ASC LIMIT :limit")
+    List<PlaceSummary> getFavoritesAfter(float rating, int id, int limit);
+
+    // Returned in reverse order; callers flip it back
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places WHERE favorite = 1 "
+            + "AND (rating > :rating OR (rating = :rating AND id < :id)) "
+            + "ORDER BY rating ASC, id DESC LIMIT :limit")
+    List<PlaceSummary> getFavoritesBefore(float rating, int id, int limit);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places WHERE latitude BETWEEN :minLat AND :maxLat "
+            + "AND longitude BETWEEN :minLng AND :maxLng ORDER BY rating DESC LIMIT :limit")
+    List<PlaceSummary> getPlacesInBounds(double minLat, double minLng, double maxLat, double maxLng, int limit);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places WHERE latitude BETWEEN :minLat AND :maxLat "
+            + "AND longitude BETWEEN :minLng AND :maxLng ORDER BY rating DESC LIMIT :limit")
+    LiveData<List<PlaceSummary>> observePlacesInBounds(double minLat, double minLng, double maxLat, double maxLng,
+            int limit);
+
+    @Query("SELECT COUNT(*) FROM places WHERE latitude BETWEEN :minLat AND :maxLat "
+            + "AND longitude BETWEEN :minLng AND :maxLng")
+    int countPlacesInBounds(double minLat, double minLng, double maxLat, double maxLng);
+
+    /**
+     * Closest places inside a lat/lng window, ordered by equirectangular distance.
+     * lngScale is cos²(lat) so longitude degrees are weighted correctly.
+     */
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places WHERE latitude BETWEEN :lat - :latSpan AND :lat + :latSpan "
+            + "AND longitude BETWEEN :lng - :lngSpan AND :lng + :lngSpan "
+            + "ORDER BY (latitude - :lat) * (latitude - :lat) "
+            + "+ (longitude - :lng) * (longitude - :lng) * :lngScale LIMIT :k")
+    List<PlaceSummary> getNearestInWindow(double lat, double lng, double latSpan, double lngSpan, double lngScale,
+            int k);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM places WHERE latitude BETWEEN :lat - :latSpan AND :lat + :latSpan "
+            + "AND longitude BETWEEN :lng - :lngSpan AND :lng + :lngSpan "
+            + "ORDER BY (latitude - :lat) * (latitude - :lat) "
+            + "+ (longitude - :lng) * (longitude - :lng) * :lngScale LIMIT :k")
+    LiveData<List<PlaceSummary>> observeNearestInWindow(double lat, double lng, double latSpan, double lngSpan,
+            double lngScale, int k);
+
+    /**
+     * k nearest places to a point. Starts with a ~5km window and widens it until enough
+     * rows are found, so the (latitude, longitude) index keeps the scan small.
+     */
+    default List<PlaceSummary> getNearest(double lat, double lng, int k) {
+        double lngScale = lngScale(lat);
+        List<PlaceSummary> result = new ArrayList<>();
+        for (double latSpan = NEAREST_START_SPAN_DEGREES; latSpan <= NEAREST_MAX_SPAN_DEGREES; latSpan *= 2) {
+            result = getNearestInWindow(lat, lng, latSpan, lngSpan(lat, latSpan), lngScale, k);
+            if (result.size() >= k) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    static double lngScale(double lat) {
+        double cos = Math.cos(Math.toRadians(lat));
+        return cos * cos;
+    }
+
+    /**
+     * Longitude half-width covering the same ground distance as latSpan at this latitude
+     */
+    static double lngSpan(double lat, double latSpan) {
+        return Math.min(180, latSpan / Math.max(0.01, Math.cos(Math.toRadians(lat))));
+    }
+
+    /**
+     * Every row matching a prefix full-text search, with its matchinfo('pcx') blob for
+     * {@link PlaceFtsMatch#relevance()}; the ranking is done by {@link #search}
+     */
+    @Query("SELECT places.id AS id, (places.name LIKE :namePrefix) AS namePrefix, places.rating AS rating, "
+            + "matchinfo(places_fts, 'pcx') AS matchinfo "
+            + "FROM places JOIN places_fts ON places.id = places_fts.rowid "
+            + "WHERE places_fts MATCH :match")
+    List<PlaceFtsMatch> searchFts(String match, String namePrefix);
+
+    @Query("SELECT * FROM places WHERE id IN (:ids)")
+    List<PlaceEntity> getPlacesByIds(List<Integer> ids);
+
+    /**
+     * Offline search over cached places by name, type, description, address and tags.
+     * Every word in the query is matched as a prefix.
+     */
+    @Transaction
+    default List<PlaceEntity> search(String query, int limit) {
+        List<String> terms = new ArrayList<>();
+        if (query != null) {
+            for (String word : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    terms.add(word);
+                }
+            }
+        }
+        if (terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        StringBuilder match = new StringBuilder();
+        for (String term : terms) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(term).append('*');
+        }
+
+        // Names starting with the first term first, then by relevance, then by rating
+        List<PlaceFtsMatch> matches = searchFts(match.toString(), terms.get(0) + "%");
+        Map<Integer, Double> relevance = new HashMap<>();
+        for (PlaceFtsMatch hit : matches) {
+            relevance.put(hit.id, hit.relevance());
+        }
+        matches.sort((a, b) -> {
+            if (a.namePrefix != b.namePrefix) {
+                return a.namePrefix ? -1 : 1;
+            }
+            int byRelevance = Double.compare(relevance.get(b.id), relevance.get(a.id));
+            return byRelevance != 0 ? byRelevance : Float.compare(b.rating, a.rating);
+        });
+
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            ids.add(matches.get(i).id);
+        }
+        Map<Integer, PlaceEntity> byId = new HashMap<>();
+        for (List<Integer> chunk : inChunks(ids)) {
+            for (PlaceEntity place : getPlacesByIds(chunk)) {
+                byId.put(place.id, place);
+            }
+        }
+        List<PlaceEntity> results = new ArrayList<>();
+        for (Integer id : ids) {
+            PlaceEntity place = byId.get(id);
+            if (place != null) {
+                results.add(place);
+            }
+        }
+        return results;
+    }
 
     @Query("SELECT * FROM places WHERE googlePlaceId = :googlePlaceId LIMIT 1")
     PlaceEntity getPlaceByGoogleId(String googlePlaceId);
@@ -28,15 +215,20 @@ public interface PlaceDao {
     @Query("SELECT * FROM places WHERE id = :id LIMIT 1")
     PlaceEntity getPlaceById(int id);
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertAll(List<PlaceEntity> places);
+    // Never REPLACE: it deletes the old row, which cascades to its details and gives it a
+    // new id. A clash on googlePlaceId returns -1 instead and the caller updates the row.
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    List<Long> insertAll(List<PlaceEntity> places);
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insert(PlaceEntity place);
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(PlaceEntity place);
 
     @Update
     void update(PlaceEntity place);
 
+    @Update
+    void updateAll(List<PlaceEntity> places);
+
     @Delete
     void delete(PlaceEntity place);
 
@@ -45,4 +237,245 @@ public interface PlaceDao {
 
     @Query("DELETE FROM places")
     void deleteAll();
+
+    @Query("DELETE FROM places WHERE id IN (:ids)")
+    void deleteByIds(List<Integer> ids);
+
+    @Query("UPDATE places SET fetchedAt = :fetchedAt WHERE id IN (:ids)")
+    void touchFetchedAt(List<Integer> ids, long fetchedAt);
+
+    @Query("SELECT * FROM place_details WHERE placeId = :placeId LIMIT 1")
+    PlaceDetailsEntity getDetails(int placeId);
+
+    @Query("SELECT * FROM place_details WHERE placeId IN (:placeIds)")
+    List<PlaceDetailsEntity> getDetailsFor(List<Integer> placeIds);
+
+    @Upsert
+    void upsertDetails(PlaceDetailsEntity details);
+
+    @Upsert
+    void upsertAllDetails(List<PlaceDetailsEntity> details);
+
+    /**
+     * A place with its cold fields attached, for the details screen
+     */
+    @Transaction
+    default PlaceEntity getPlaceWithDetails(int id) {
+        PlaceEntity place = getPlaceById(id);
+        if (place != null) {
+            place.details = getDetails(id);
+        }
+        return place;
+    }
+
+    @Transaction
+    default PlaceEntity getPlaceWithDetailsByGoogleId(String googlePlaceId) {
+        PlaceEntity place = getPlaceByGoogleId(googlePlaceId);
+        if (place != null) {
+            place.details = getDetails(place.id);
+        }
+        return place;
+    }
+
+    /**
+     * Insert a place and, if attached, its details row. If the Google place is already
+     * stored, that row is updated instead and keeps its id.
+     */
+    @Transaction
+    default void insertWithDetails(PlaceEntity place) {
+        place.updateTagMask();
+        long id = insert(place);
+        if (id == -1) {
+            PlaceEntity existing = place.googlePlaceId != null ? getPlaceByGoogleId(place.googlePlaceId) : null;
+            if (existing == null) {
+                return;
+            }
+            place.id = existing.id;
+            updateWithDetails(place);
+            return;
+        }
+        place.id = (int) id;
+        if (place.details != null) {
+            place.details.placeId = place.id;
+            upsertDetails(place.details);
+        }
+    }
+
+    /**
+     * Update a place and, if attached, its details row (missing fields keep their stored value)
+     */
+    @Transaction
+    default void updateWithDetails(PlaceEntity place) {
+        place.updateTagMask();
+        update(place);
+        if (place.details != null) {
+            place.details.placeId = place.id;
+            PlaceDetailsEntity existing = getDetails(place.id);
+            if (existing != null) {
+                place.details.mergeMissingFrom(existing);
+            }
+            upsertDetails(place.details);
+        }
+    }
+
+    /**
+     * Read-modify-write of one place inside a single transaction, so a change made
+     * meanwhile (such as toggling favorite) is not overwritten with a stale copy
+     *
+     * @return the updated place with its details, or null if it no longer exists
+     */
+    @Transaction
+    default PlaceEntity modifyPlace(int id, Consumer<PlaceEntity> change) {
+        PlaceEntity place = getPlaceWithDetails(id);
+        if (place == null) {
+            return null;
+        }
+        change.accept(place);
+        updateWithDetails(place);
+        return place;
+    }
+
+    static <T> List<List<T>> inChunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += MAX_BIND_ARGS) {
+            chunks.add(items.subList(i, Math.min(i + MAX_BIND_ARGS, items.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Merge a fresh set of nearby results into the table in a single write transaction.
+     * Rows are matched by googlePlaceId: unchanged rows only have fetchedAt bumped, changed
+     * rows are updated in place (keeping favorite, checkins, lastVisited and fetched details),
+     * and new rows are inserted. Nothing is deleted: use this for partial results, where a
+     * missing row may just belong to a search that failed or to another area.
+     */
+    default void upsertNearbyPlaces(List<PlaceEntity> freshPlaces) {
+        upsertNearbyPlaces(freshPlaces, System.currentTimeMillis(), 0, 0, 0, 0);
+    }
+
+    /**
+     * Like {@link #upsertNearbyPlaces(List)} for the complete answer of a nearby refresh.
+     * Every returned row is stamped with fetchedAt. Rows the previous refresh returned,
+     * recognised by its stamp, are deleted if they lie inside the searched circle and are
+     * missing now, unless they are favorites. Rows stored by any other search, such as
+     * later result pages or map tiles, carry other stamps and stay. Observers see one
+     * invalidation instead of an empty table followed by one per inserted row.
+     *
+     * @param pruneRadiusMeters radius of the search around (pruneLat, pruneLng); 0 prunes nothing
+     * @param previousFetchedAt stamp of the previous refresh; 0 prunes nothing
+     */
+    @Transaction
+    default void upsertNearbyPlaces(List<PlaceEntity> freshPlaces, long fetchedAt, double pruneLat,
+            double pruneLng, double pruneRadiusMeters, long previousFetchedAt) {
+        Map<String, PlaceEntity> existingByGoogleId = new HashMap<>();
+        List<Integer> staleIds = new ArrayList<>();
+        for (PlaceEntity existing : getAllPlacesSync()) {
+            if (existing.googlePlaceId != null && !existing.googlePlaceId.isEmpty()) {
+                existingByGoogleId.put(existing.googlePlaceId, existing);
+            }
+        }
+
+        // The same place can come back from several type searches, keep the first copy
+        Map<String, PlaceEntity> freshByGoogleId = new LinkedHashMap<>();
+        for (PlaceEntity place : freshPlaces) {
+            if (place.googlePlaceId != null && !place.googlePlaceId.isEmpty()
+                    && !freshByGoogleId.containsKey(place.googlePlaceId)) {
+                freshByGoogleId.put(place.googlePlaceId, place);
+            }
+        }
+
+        List<PlaceEntity> toInsert = new ArrayList<>();
+        List<PlaceEntity> toUpdate = new ArrayList<>();
+        List<Integer> unchangedIds = new ArrayList<>();
+        for (PlaceEntity fresh : freshByGoogleId.values()) {
+            fresh.updateTagMask();
+            fresh.fetchedAt = fetchedAt;
+            PlaceEntity existing = existingByGoogleId.remove(fresh.googlePlaceId);
+            if (existing == null) {
+                toInsert.add(fresh);
+                continue;
+            }
+            fresh.mergeLocalState(existing);
+            if (!fresh.hasSameContent(existing)) {
+                toUpdate.add(fresh);
+            } else {
+                unchangedIds.add(fresh.id);
+            }
+        }
+
+        // What the previous refresh returned inside the searched circle and this one did
+        // not has gone; favorites stay
+        float[] distance = new float[1];
+        for (PlaceEntity leftover : existingByGoogleId.values()) {
+            if (pruneRadiusMeters <= 0 || previousFetchedAt <= 0 || leftover.favorite
+                    || leftover.fetchedAt != previousFetchedAt) {
+                continue;
+            }
+            Location.distanceBetween(pruneLat, pruneLng, leftover.latitude, leftover.longitude, distance);
+            if (distance[0] <= pruneRadiusMeters) {
+                staleIds.add(leftover.id);
+            }
+        }
+
+        for (List<Integer> chunk : inChunks(staleIds)) {
+            deleteByIds(chunk);
+        }
+        if (!toUpdate.isEmpty()) {
+            updateAll(toUpdate);
+        }
+        // Unchanged rows were still confirmed by this search; only their timestamp moves
+        for (List<Integer> chunk : inChunks(unchangedIds)) {
+            touchFetchedAt(chunk, fetchedAt);
+        }
+
+        // Nearby results only carry a photo reference; merge it into stored details
+        List<PlaceDetailsEntity> detailsToWrite = new ArrayList<>();
+        Map<Integer, PlaceEntity> matchedById = new HashMap<>();
+        for (PlaceEntity fresh : freshByGoogleId.values()) {
+            if (fresh.id != 0 && fresh.details != null) {
+                matchedById.put(fresh.id, fresh);
+            }
+        }
+        Map<Integer, PlaceDetailsEntity> storedDetails = new HashMap<>();
+        for (List<Integer> chunk : inChunks(new ArrayList<>(matchedById.keySet()))) {
+            for (PlaceDetailsEntity stored : getDetailsFor(chunk)) {
+                storedDetails.put(stored.placeId, stored);
+            }
+        }
+        for (PlaceEntity matched : matchedById.values()) {
+            matched.details.placeId = matched.id;
+            PlaceDetailsEntity stored = storedDetails.get(matched.id);
+            if (stored != null) {
+                matched.details.mergeMissingFrom(stored);
+            }
+            if (stored == null || !matched.details.hasSameContent(stored)) {
+                detailsToWrite.add(matched.details);
+            }
+        }
+
+        if (!toInsert.isEmpty()) {
+            List<Long> ids = insertAll(toInsert);
+            for (int i = 0; i < toInsert.size(); i++) {
+                PlaceEntity inserted = toInsert.get(i);
+                if (ids.get(i) == -1) {
+                    // Not expected inside this transaction, but never take -1 for an id
+                    PlaceEntity existing = getPlaceByGoogleId(inserted.googlePlaceId);
+                    if (existing != null) {
+                        inserted.mergeLocalState(existing);
+                        updateWithDetails(inserted);
+                    }
+                    continue;
+                }
+                inserted.id = ids.get(i).intValue();
+                if (inserted.details != null) {
+                    inserted.details.placeId = inserted.id;
+                    detailsToWrite.add(inserted.details);
+                }
+            }
+        }
+        if (!detailsToWrite.isEmpty()) {
+            upsertAllDetails(detailsToWrite);
+        }
+    }
 }
@@ -3,17 +3,22 @@ package ca.gbc.comp3074.uiprototype.data;
 import android.util.Log;
 
 import ca.gbc.comp3074.uiprototype.api.GooglePlacesService;
+import ca.gbc.comp3074.uiprototype.api.PlaceDetailsFields;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Converts Google Places API data to our local PlaceEntity format
  */
 public class PlaceDataConverter {
     private static final String TAG = "PlaceDataConverter";
+    // Emoji for places outside every category
+    static final String DEFAULT_EMOJI = "📍";
     
     // Map Google Place types to our quiet space categories
     private static final Map<String, String> TYPE_MAPPING = new HashMap<>();
@@ -83,9 +88,10 @@ public class PlaceDataConverter {
         // Set quiet score based on place type and rating
         entity.quietScore = calculateQuietScore(entity.type, entity.rating);
         
-        // Photo reference for later loading
+        // Photo reference for later loading (stored with the place details)
         if (googlePlace.photos != null && !googlePlace.photos.isEmpty()) {
-            entity.photoReference = googlePlace.photos.get(0).photoReference;
+            entity.details = new PlaceDetailsEntity();
+            entity.details.photoReference = googlePlace.photos.get(0).photoReference;
         }
         
         // Set description based on type
@@ -102,6 +108,8 @@ public class PlaceDataConverter {
         
         // Set tags based on type
         entity.tags = generateTagsForType(entity.type);
+        entity.updateTagMask();
+        entity.fetchedAt = System.currentTimeMillis();
         
         return entity;
     }
@@ -120,65 +128,78 @@ public class PlaceDataConverter {
             case "Spiritual": return "🕊️";
             case "Study Space": return "📖";
             case "Bookstore": return "📕";
-            default: return "📍";
+            default: return DEFAULT_EMOJI;
         }
     }
 
     /**
-     * Generate tags for place type
+     * Every emoji a converted place can carry, so their marker icons can be drawn ahead of time
+     */
+    static Set<String> getCategoryEmojis() {
+        Set<String> emojis = new LinkedHashSet<>();
+        for (String type : TYPE_MAPPING.values()) {
+            emojis.add(getEmojiForType(type));
+        }
+        emojis.add(DEFAULT_EMOJI);
+        return emojis;
+    }
+
+    /**
+     * Generate tags for place type. Tags come from the fixed {@link PlaceTags} vocabulary
+     * so they can be filtered by bitmask in SQL.
      */
     private static List<String> generateTagsForType(String type) {
         List<String> tags = new ArrayList<>();
         
         switch (type) {
             case "Library":
-                tags.add("Quiet");
-                tags.add("Study");
-                tags.add("Free WiFi");
+                tags.add(PlaceTags.QUIET);
+                tags.add(PlaceTags.STUDY);
+                tags.add(PlaceTags.FREE_WIFI);
                 break;
             case "Park":
-                tags.add("Outdoor");
-                tags.add("Nature");
-                tags.add("Fresh Air");
+                tags.add(PlaceTags.OUTDOOR);
+                tags.add(PlaceTags.NATURE);
+                tags.add(PlaceTags.FRESH_AIR);
                 break;
             case "Cafe":
-                tags.add("Coffee");
-                tags.add("WiFi");
-                tags.add("Cozy");
+                tags.add(PlaceTags.COFFEE);
+                tags.add(PlaceTags.WIFI);
+                tags.add(PlaceTags.COZY);
                 break;
             case "Museum":
-                tags.add("Cultural");
-                tags.add("Quiet");
-                tags.add("Educational");
+                tags.add(PlaceTags.CULTURAL);
+                tags.add(PlaceTags.QUIET);
+                tags.add(PlaceTags.EDUCATIONAL);
                 break;
             case "Gallery":
-                tags.add("Art");
-                tags.add("Inspiring");
-                tags.add("Quiet");
+                tags.add(PlaceTags.ART);
+                tags.add(PlaceTags.INSPIRING);
+                tags.add(PlaceTags.QUIET);
                 break;
             case "Wellness":
-                tags.add("Relaxation");
-                tags.add("Peaceful");
-                tags.add("Calm");
+                tags.add(PlaceTags.RELAXATION);
+                tags.add(PlaceTags.PEACEFUL);
+                tags.add(PlaceTags.CALM);
                 break;
             case "Spiritual":
-                tags.add("Meditation");
-                tags.add("Peaceful");
-                tags.add("Quiet");
+                tags.add(PlaceTags.MEDITATION);
+                tags.add(PlaceTags.PEACEFUL);
+                tags.add(PlaceTags.QUIET);
                 break;
             case "Study Space":
-                tags.add("Study");
-                tags.add("Quiet");
-                tags.add("Focus");
+                tags.add(PlaceTags.STUDY);
+                tags.add(PlaceTags.QUIET);
+                tags.add(PlaceTags.FOCUS);
                 break;
             case "Bookstore":
-                tags.add("Books");
-                tags.add("Quiet");
-                tags.add("Reading");
+                tags.add(PlaceTags.BOOKS);
+                tags.add(PlaceTags.QUIET);
+                tags.add(PlaceTags.READING);
                 break;
             default:
-                tags.add("Quiet");
-                tags.add("Peaceful");
+                tags.add(PlaceTags.QUIET);
+                tags.add(PlaceTags.PEACEFUL);
                 break;
         }
         
@@ -327,7 +348,19 @@ public class PlaceDataConverter {
      * Update PlaceEntity with detailed information from Google Place Details
      */
     public static void updatePlaceWithDetails(PlaceEntity entity, GooglePlacesService.GooglePlaceDetails details) {
+        updatePlaceWithDetails(entity, details, PlaceDetailsFields.ALL);
+    }
+
+    /**
+     * Update PlaceEntity from a details response that asked for the given field groups;
+     * only those groups are marked as freshly fetched
+     */
+    public static void updatePlaceWithDetails(PlaceEntity entity, GooglePlacesService.GooglePlaceDetails details,
+            int fieldGroups) {
         if (details == null) return;
+        if (entity.details == null) {
+            entity.details = new PlaceDetailsEntity();
+        }
         
         // Update address
         if (details.formattedAddress != null) {
@@ -336,14 +369,14 @@ public class PlaceDataConverter {
         
         // Update phone
         if (details.formattedPhoneNumber != null) {
-            entity.phoneNumber = details.formattedPhoneNumber;
+            entity.details.phoneNumber = details.formattedPhoneNumber;
         }
         
         // Update opening hours
         if (details.openingHours != null) {
             entity.isOpen = details.openingHours.openNow;
             if (details.openingHours.weekdayText != null && !details.openingHours.weekdayText.isEmpty()) {
-                entity.openingHours = String.join("\n", details.openingHours.weekdayText);
+                entity.details.openingHours = String.join("\n", details.openingHours.weekdayText);
             }
         }
         
@@ -364,7 +397,22 @@ public class PlaceDataConverter {
                           .append("\n\n");
             }
             
-            entity.reviews = reviewsText.toString().trim();
+            entity.details.reviews = reviewsText.toString().trim();
+        }
+
+        long now = System.currentTimeMillis();
+        if ((fieldGroups & (PlaceDetailsFields.BASIC | PlaceDetailsFields.CONTACT)) != 0) {
+            entity.details.fetchedAt = now;
+        }
+        if ((fieldGroups & PlaceDetailsFields.HOURS) != 0) {
+            entity.details.hoursFetchedAt = now;
+        }
+        if ((fieldGroups & PlaceDetailsFields.REVIEWS) != 0) {
+            if (details.rating > 0) {
+                entity.rating = details.rating;
+                entity.reviewCount = details.userRatingsTotal;
+            }
+            entity.details.reviewsFetchedAt = now;
         }
     }
 }
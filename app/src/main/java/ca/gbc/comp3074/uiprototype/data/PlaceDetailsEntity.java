@@ -0,0 +1,96 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+import java.util.Objects;
+
+/**
+ * Large, rarely read fields of a place. Kept out of the places table so list and map
+ * queries do not drag review text and opening hours through the cursor window.
+ * Only the details screen loads these.
+ */
+@Entity(tableName = "place_details", foreignKeys = @ForeignKey(entity = PlaceEntity.class,
+        parentColumns = "id",
+        childColumns = "placeId",
+        onDelete = ForeignKey.CASCADE))
+public class PlaceDetailsEntity {
+
+    @PrimaryKey
+    public int placeId;
+
+    public String phoneNumber;
+    public String website;
+    public String openingHours;
+    public String photoReference;
+    public String reviews;
+
+    // When each field group was last loaded from Place Details, epoch millis; 0 if never.
+    // fetchedAt covers the basic and contact fields, the others go stale sooner.
+    @ColumnInfo(defaultValue = "0")
+    public long fetchedAt;
+
+    @ColumnInfo(defaultValue = "0")
+    public long hoursFetchedAt;
+
+    @ColumnInfo(defaultValue = "0")
+    public long reviewsFetchedAt;
+
+    public PlaceDetailsEntity() {
+    }
+
+    @Ignore
+    public PlaceDetailsEntity(String phoneNumber, String website, String openingHours) {
+        this.phoneNumber = phoneNumber;
+        this.website = website;
+        this.openingHours = openingHours;
+        this.photoReference = "";
+        this.reviews = "";
+    }
+
+    /**
+     * Fill fields this copy does not have from a previously stored row
+     */
+    public void mergeMissingFrom(@NonNull PlaceDetailsEntity existing) {
+        if (phoneNumber == null) {
+            phoneNumber = existing.phoneNumber;
+        }
+        if (website == null) {
+            website = existing.website;
+        }
+        if (openingHours == null) {
+            openingHours = existing.openingHours;
+        }
+        if (photoReference == null || photoReference.isEmpty()) {
+            photoReference = existing.photoReference;
+        }
+        if (reviews == null || reviews.isEmpty()) {
+            reviews = existing.reviews;
+        }
+        if (fetchedAt == 0) {
+            fetchedAt = existing.fetchedAt;
+        }
+        if (hoursFetchedAt == 0) {
+            hoursFetchedAt = existing.hoursFetchedAt;
+        }
+        if (reviewsFetchedAt == 0) {
+            reviewsFetchedAt = existing.reviewsFetchedAt;
+        }
+    }
+
+    public boolean hasSameContent(@NonNull PlaceDetailsEntity other) {
+        return placeId == other.placeId
+                && fetchedAt == other.fetchedAt
+                && hoursFetchedAt == other.hoursFetchedAt
+                && reviewsFetchedAt == other.reviewsFetchedAt
+                && Objects.equals(phoneNumber, other.phoneNumber)
+                && Objects.equals(website, other.website)
+                && Objects.equals(openingHours, other.openingHours)
+                && Objects.equals(photoReference, other.photoReference)
+                && Objects.equals(reviews, other.reviews);
+    }
+}
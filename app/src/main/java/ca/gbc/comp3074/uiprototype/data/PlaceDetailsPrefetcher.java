@@ -0,0 +1,101 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import android.app.Application;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService;
+import ca.gbc.comp3074.uiprototype.api.QuotaManager;
+import ca.gbc.comp3074.uiprototype.utils.AppConfig;
+
+/**
+ * Loads details for places the user is likely to open next, so the details screen can
+ * render from cache. Only runs on unmetered networks, only for places already stored,
+ * and only asks Google for the field groups that are stale.
+ */
+public class PlaceDetailsPrefetcher {
+    private static final String TAG = "PlaceDetailsPrefetcher";
+
+    private final PlaceRepository placeRepository;
+    private final GooglePlacesService placesService;
+    private final ConnectivityManager connectivityManager;
+    // Google ids with a prefetch under way, so list refreshes do not repeat them
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public PlaceDetailsPrefetcher(Context context) {
+        placeRepository = PlaceRepository.getInstance((Application) context.getApplicationContext());
+        placesService = new GooglePlacesService();
+        connectivityManager = (ConnectivityManager) context.getApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    /**
+     * Prefetch details for the first {@link AppConfig#DETAILS_PREFETCH_COUNT} ids; nulls
+     * are skipped
+     */
+    public void prefetch(List<String> googlePlaceIds) {
+        if (!isOnUnmeteredNetwork()) {
+            return;
+        }
+        int started = 0;
+        for (String googlePlaceId : googlePlaceIds) {
+            if (started >= AppConfig.DETAILS_PREFETCH_COUNT) {
+                break;
+            }
+            if (googlePlaceId == null || googlePlaceId.isEmpty()) {
+                continue;
+            }
+            started++;
+            if (inFlight.add(googlePlaceId)) {
+                prefetchOne(googlePlaceId);
+            }
+        }
+    }
+
+    private void prefetchOne(String googlePlaceId) {
+        placeRepository.getPlaceByGoogleIdAsync(googlePlaceId).whenComplete((place, error) -> {
+            if (place == null) {
+                inFlight.remove(googlePlaceId);
+                return;
+            }
+            int staleFields = CachePolicy.staleDetailFields(place.details, System.currentTimeMillis());
+            if (staleFields == 0) {
+                inFlight.remove(googlePlaceId);
+                return;
+            }
+            placesService.getPlaceDetails(googlePlaceId, staleFields, QuotaManager.PRIORITY_PREFETCH,
+                    new GooglePlacesService.PlaceDetailsCallback() {
+                    @Override
+                    public void onSuccess(GooglePlacesService.GooglePlaceDetails placeDetails) {
+                        // The row read above may be seconds old by now
+                        placeRepository.applyPlaceDetails(place.id, placeDetails, staleFields);
+                        inFlight.remove(googlePlaceId);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        Log.d(TAG, "Prefetch failed for " + googlePlaceId + ": " + error);
+                        inFlight.remove(googlePlaceId);
+                    }
+                });
+        });
+    }
+
+    private boolean isOnUnmeteredNetwork() {
+        if (connectivityManager == null) {
+            return false;
+        }
+        Network network = connectivityManager.getActiveNetwork();
+        NetworkCapabilities capabilities = network != null ? connectivityManager.getNetworkCapabilities(network) : null;
+        return capabilities != null
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+    }
+}
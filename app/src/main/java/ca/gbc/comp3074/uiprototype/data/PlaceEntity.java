@@ -1,14 +1,26 @@
 package ca.gbc.comp3074.uiprototype.data;
 
 import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import java.util.ArrayList;
 import java.util.List;
-
-@Entity(tableName = "places")
+import java.util.Objects;
+
+@Entity(tableName = "places", indices = {
+        // Bounding-box lookups for the map viewport and nearest-place queries
+        @Index(value = { "latitude", "longitude" }),
+        // One row per Google place; also makes lookup by googlePlaceId a b-tree seek
+        @Index(value = { "googlePlaceId" }, unique = true),
+        // Favorites list and keyset pages: WHERE favorite = 1 ORDER BY rating
+        @Index(value = { "favorite", "rating" }),
+        // Top-rated and "all places" lists ordered by rating
+        @Index(value = { "rating" })
+})
 public class PlaceEntity {
 
     @PrimaryKey(autoGenerate = true)
@@ -40,21 +52,28 @@ public class PlaceEntity {
     @NonNull
     public List<String> tags;
 
+    // PlaceTags bits for the tags above, so tag filters can run in SQL
+    @ColumnInfo(defaultValue = "0")
+    public int tagMask;
+
     public double latitude;
     public double longitude;
     public String address;
     public String description;
-    public String phoneNumber;
-    public String website;
-    public String openingHours;
     
     // Additional fields for Google Places integration
     public String googlePlaceId;
     public String priceLevel;
     public boolean isOpen;
     public float quietScore;
-    public String photoReference;
-    public String reviews;
+
+    // When this row was last returned by a nearby search, epoch millis; 0 if never
+    @ColumnInfo(defaultValue = "0")
+    public long fetchedAt;
+
+    // Cold fields live in place_details; only set when loaded or about to be written
+    @Ignore
+    public PlaceDetailsEntity details;
 
     // Default constructor for Room
     public PlaceEntity() {
@@ -94,20 +113,61 @@ public class PlaceEntity {
         this.lastVisited = lastVisited;
         this.emoji = emoji;
         this.tags = tags;
+        this.tagMask = PlaceTags.maskOf(tags);
         this.latitude = latitude;
         this.longitude = longitude;
         this.address = address;
         this.description = description;
-        this.phoneNumber = phoneNumber;
-        this.website = website;
-        this.openingHours = openingHours;
+        this.details = new PlaceDetailsEntity(phoneNumber, website, openingHours);
         
-        // Initialize new fields with defaults
-        this.googlePlaceId = "";
+        // Initialize new fields with defaults; googlePlaceId stays null so the unique index allows many
+        this.googlePlaceId = null;
         this.priceLevel = "";
         this.isOpen = true;
         this.quietScore = 3.0f;
-        this.photoReference = "";
-        this.reviews = "";
+    }
+
+    /**
+     * Recompute tagMask after tags were assigned directly
+     */
+    public void updateTagMask() {
+        this.tagMask = PlaceTags.maskOf(tags);
+    }
+
+    /**
+     * Copy the user's own state from the stored row, so a refresh from nearby search
+     * does not wipe it.
+     */
+    public void mergeLocalState(@NonNull PlaceEntity existing) {
+        this.id = existing.id;
+        this.favorite = existing.favorite;
+        this.checkins = existing.checkins;
+        this.lastVisited = existing.lastVisited;
+    }
+
+    /**
+     * Column-by-column comparison used to skip writes for rows that did not change
+     */
+    public boolean hasSameContent(@NonNull PlaceEntity other) {
+        return id == other.id
+                && Float.compare(rating, other.rating) == 0
+                && reviewCount == other.reviewCount
+                && favorite == other.favorite
+                && checkins == other.checkins
+                && tagMask == other.tagMask
+                && Double.compare(latitude, other.latitude) == 0
+                && Double.compare(longitude, other.longitude) == 0
+                && isOpen == other.isOpen
+                && Float.compare(quietScore, other.quietScore) == 0
+                && name.equals(other.name)
+                && type.equals(other.type)
+                && distance.equals(other.distance)
+                && lastVisited.equals(other.lastVisited)
+                && emoji.equals(other.emoji)
+                && tags.equals(other.tags)
+                && Objects.equals(address, other.address)
+                && Objects.equals(description, other.description)
+                && Objects.equals(googlePlaceId, other.googlePlaceId)
+                && Objects.equals(priceLevel, other.priceLevel);
     }
 }
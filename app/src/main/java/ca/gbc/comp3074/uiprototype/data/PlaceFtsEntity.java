@@ -0,0 +1,20 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+/**
+ * Full-text index over the searchable text columns of {@link PlaceEntity}.
+ * Uses the places table as external content, so Room keeps it in sync with triggers
+ * and the text is not stored twice.
+ */
+@Fts4(contentEntity = PlaceEntity.class)
+@Entity(tableName = "places_fts")
+public class PlaceFtsEntity {
+
+    public String name;
+    public String type;
+    public String description;
+    public String address;
+    public String tags;
+}
@@ -0,0 +1,55 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * One full-text hit before it is ranked: the place id, what the ranking needs from the
+ * row, and the FTS4 matchinfo('pcx') blob describing where the terms matched.
+ */
+public class PlaceFtsMatch {
+
+    // Weight of a hit in each places_fts column, in declaration order:
+    // name, type, description, address, tags
+    private static final double[] COLUMN_WEIGHTS = { 4, 2, 1, 0.5, 2 };
+
+    public int id;
+    // The name starts with the first search term
+    public boolean namePrefix;
+    public float rating;
+    public byte[] matchinfo;
+
+    /**
+     * How well the row matches the search. For every term and column, the row's share of
+     * all hits that term has in that column across the index, times the column's weight,
+     * summed. A hit counts for more in a name than in an address, and a term that is
+     * rare in the cache counts for more than one most places contain.
+     */
+    public double relevance() {
+        if (matchinfo == null || matchinfo.length < 8) {
+            return 0;
+        }
+        // 32-bit unsigned ints in the machine's byte order: phrase count, column count,
+        // then for each phrase and column the hits in this row, in all rows, and the
+        // number of rows with a hit
+        ByteBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+        int phrases = info.getInt(0);
+        int columns = info.getInt(4);
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int offset = 8 + 12 * (phrase * columns + column);
+                if (offset + 8 > matchinfo.length) {
+                    return score;
+                }
+                int rowHits = info.getInt(offset);
+                int allHits = info.getInt(offset + 4);
+                if (rowHits > 0 && allHits > 0) {
+                    double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1;
+                    score += weight * rowHits / allHits;
+                }
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,59 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Difference between the places on the map and a new list of places, keyed by
+ * {@link PlaceClusterItem#keyOf}. Computed off the main thread, so applying it only
+ * touches the markers that actually differ; an empty diff touches none.
+ */
+final class PlaceMarkerDiff {
+    // The shown items this diff was computed against
+    final Map<String, PlaceClusterItem> base;
+    // The shown items once the diff is applied; unchanged places keep their old item
+    final Map<String, PlaceClusterItem> result;
+    final List<PlaceClusterItem> added = new ArrayList<>();
+    final List<PlaceClusterItem> removed = new ArrayList<>();
+    final List<PlaceClusterItem> changed = new ArrayList<>();
+
+    private PlaceMarkerDiff(Map<String, PlaceClusterItem> base, Map<String, PlaceClusterItem> result) {
+        this.base = base;
+        this.result = result;
+    }
+
+    static PlaceMarkerDiff compute(Map<String, PlaceClusterItem> shown, List<PlaceSummary> places) {
+        Map<String, PlaceClusterItem> result = new HashMap<>();
+        PlaceMarkerDiff diff = new PlaceMarkerDiff(shown, Collections.unmodifiableMap(result));
+        if (places != null) {
+            for (PlaceSummary place : places) {
+                PlaceClusterItem item = new PlaceClusterItem(place);
+                if (result.containsKey(item.getKey())) {
+                    continue;
+                }
+                PlaceClusterItem old = shown.get(item.getKey());
+                if (old == null) {
+                    diff.added.add(item);
+                } else if (old.hasSameContent(item)) {
+                    item = old;
+                } else {
+                    diff.changed.add(item);
+                }
+                result.put(item.getKey(), item);
+            }
+        }
+        for (Map.Entry<String, PlaceClusterItem> entry : shown.entrySet()) {
+            if (!result.containsKey(entry.getKey())) {
+                diff.removed.add(entry.getValue());
+            }
+        }
+        return diff;
+    }
+
+    boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+}
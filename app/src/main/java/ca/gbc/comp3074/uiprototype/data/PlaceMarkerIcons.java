@@ -0,0 +1,146 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.Log;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Marker icons for places: the place's category emoji on a round pin, red normally and
+ * green when selected. Each emoji and state is drawn once and shared by every marker
+ * showing it, so markers cost no bitmap of their own.
+ *
+ * Call {@link #init(Context)} once from the Application off the main thread; it draws the
+ * icons of every category there. {@link #get()} before that draws icons on first use,
+ * at the system display density.
+ */
+public final class PlaceMarkerIcons {
+    private static final String TAG = "PlaceMarkerIcons";
+
+    private static final int PIN_COLOR = Color.parseColor("#E53935");
+    private static final int SELECTED_PIN_COLOR = Color.parseColor("#43A047");
+    // Sizes in dp
+    private static final float HEAD_DIAMETER = 36f;
+    private static final float RING_WIDTH = 3f;
+    private static final float POINTER_HEIGHT = 8f;
+    private static final float EMOJI_SIZE = 20f;
+
+    private static volatile PlaceMarkerIcons instance;
+
+    private final float density;
+    // Drawn ahead of time and waiting to be wrapped; Maps may not be ready when they are drawn
+    private final Map<String, Bitmap> bitmaps = new ConcurrentHashMap<>();
+    private final Map<String, BitmapDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    private PlaceMarkerIcons(float density) {
+        this.density = density;
+    }
+
+    /**
+     * Draws the icons of every category; meant for a background thread at startup
+     */
+    public static void init(Context context) {
+        if (instance == null) {
+            synchronized (PlaceMarkerIcons.class) {
+                if (instance == null) {
+                    instance = new PlaceMarkerIcons(context.getResources().getDisplayMetrics().density);
+                }
+            }
+        }
+        instance.prerender();
+    }
+
+    public static PlaceMarkerIcons get() {
+        if (instance == null) {
+            synchronized (PlaceMarkerIcons.class) {
+                if (instance == null) {
+                    Log.w(TAG, "Marker icons used before init, drawing them on demand");
+                    instance = new PlaceMarkerIcons(Resources.getSystem().getDisplayMetrics().density);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * The shared icon for this emoji and state. Call it once Maps is ready, as for any
+     * {@link BitmapDescriptorFactory} call.
+     */
+    public BitmapDescriptor icon(String emoji, boolean selected) {
+        if (emoji == null || emoji.isEmpty()) {
+            emoji = PlaceDataConverter.DEFAULT_EMOJI;
+        }
+        String key = keyOf(emoji, selected);
+        BitmapDescriptor descriptor = descriptors.get(key);
+        if (descriptor == null) {
+            Bitmap bitmap = bitmaps.remove(key);
+            if (bitmap == null) {
+                // Only for emoji outside the categories, or before the startup render is done
+                bitmap = render(emoji, selected);
+            }
+            descriptor = BitmapDescriptorFactory.fromBitmap(bitmap);
+            descriptors.put(key, descriptor);
+        }
+        return descriptor;
+    }
+
+    private void prerender() {
+        for (String emoji : PlaceDataConverter.getCategoryEmojis()) {
+            for (boolean selected : new boolean[] { false, true }) {
+                String key = keyOf(emoji, selected);
+                if (!descriptors.containsKey(key) && !bitmaps.containsKey(key)) {
+                    bitmaps.put(key, render(emoji, selected));
+                }
+            }
+        }
+    }
+
+    private static String keyOf(String emoji, boolean selected) {
+        return selected ? emoji + ":selected" : emoji;
+    }
+
+    /**
+     * A white disc with a colored ring and the emoji in the middle, over a pointer whose
+     * tip is the bottom center of the bitmap, where Maps anchors markers by default
+     */
+    private Bitmap render(String emoji, boolean selected) {
+        float head = HEAD_DIAMETER * density;
+        float ring = RING_WIDTH * density;
+        float pointer = POINTER_HEIGHT * density;
+        int width = (int) Math.ceil(head);
+        int height = (int) Math.ceil(head + pointer);
+        float radius = head / 2;
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        paint.setColor(selected ? SELECTED_PIN_COLOR : PIN_COLOR);
+        Path tip = new Path();
+        tip.moveTo(radius - pointer, head - pointer);
+        tip.lineTo(radius + pointer, head - pointer);
+        tip.lineTo(radius, head + pointer);
+        tip.close();
+        canvas.drawPath(tip, paint);
+        canvas.drawCircle(radius, radius, radius, paint);
+
+        paint.setColor(Color.WHITE);
+        canvas.drawCircle(radius, radius, radius - ring, paint);
+
+        paint.setTextSize(EMOJI_SIZE * density);
+        paint.setTextAlign(Paint.Align.CENTER);
+        Paint.FontMetrics metrics = paint.getFontMetrics();
+        canvas.drawText(emoji, radius, radius - (metrics.ascent + metrics.descent) / 2, paint);
+        return bitmap;
+    }
+}
@@ -1,15 +1,18 @@
 package ca.gbc.comp3074.uiprototype.data;
 
 import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.LruCache;
 
 import androidx.lifecycle.LiveData;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService;
 import ca.gbc.comp3074.uiprototype.data.supabase.SupabaseFavoritesRepository;
 import ca.gbc.comp3074.uiprototype.data.supabase.SupabaseSyncHelper;
 import ca.gbc.comp3074.uiprototype.data.supabase.models.UserFavorite;
@@ -20,80 +23,278 @@ import kotlin.coroutines.EmptyCoroutineContext;
 
 public class PlaceRepository {
 
+    // Where and when the last nearby search ran, for stale-while-revalidate
+    private static final String CACHE_PREFS = "place_cache";
+    private static final String KEY_NEARBY_FETCHED_AT = "nearby_fetched_at";
+    private static final String KEY_NEARBY_LAT = "nearby_lat";
+    private static final String KEY_NEARBY_LNG = "nearby_lng";
+    private static final int MAX_REMEMBERED_PLACES = 32;
+
+    private final QuietSpaceDatabase database;
     private final PlaceDao placeDao;
-    private final LiveData<List<PlaceEntity>> allPlaces;
-    private final LiveData<List<PlaceEntity>> favoritePlaces;
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final LiveData<List<PlaceSummary>> allPlaces;
+    private final LiveData<List<PlaceSummary>> favoritePlaces;
+    private static volatile PlaceRepository INSTANCE;
+
+    // Shared across the process: writes are serialized on one thread, reads use a small pool
+    private final ExecutorService writeExecutor;
+    private final ExecutorService readExecutor;
     private final SupabaseFavoritesRepository supabaseFavoritesRepository;
+    private final SharedPreferences cachePrefs;
+    // In-memory copy of the last nearby search, read from cachePrefs once off the main thread
+    private NearbyFetch nearbyFetch;
+    // Places with details recently loaded or prefetched, so a details screen can draw
+    // its first frame without waiting for Room
+    private final LruCache<String, PlaceEntity> placesByGoogleId = new LruCache<>(MAX_REMEMBERED_PLACES);
+
+    private static final class NearbyFetch {
+        static final NearbyFetch NONE = new NearbyFetch(0, 0, 0);
 
-    public PlaceRepository(Application application) {
-        QuietSpaceDatabase database = QuietSpaceDatabase.getInstance(application);
+        final long fetchedAt;
+        final double lat;
+        final double lng;
+
+        NearbyFetch(long fetchedAt, double lat, double lng) {
+            this.fetchedAt = fetchedAt;
+            this.lat = lat;
+            this.lng = lng;
+        }
+    }
+
+    private PlaceRepository(Application application) {
+        writeExecutor = AppExecutors.getInstance().diskWrite();
+        readExecutor = AppExecutors.getInstance().diskRead();
+        database = QuietSpaceDatabase.getInstance(application);
         placeDao = database.placeDao();
         allPlaces = placeDao.getAllPlaces();
         favoritePlaces = placeDao.getFavoritePlaces();
         supabaseFavoritesRepository = new SupabaseFavoritesRepository();
+        cachePrefs = application.getSharedPreferences(CACHE_PREFS, Context.MODE_PRIVATE);
     }
 
-    public LiveData<List<PlaceEntity>> getAllPlaces() {
+    public static PlaceRepository getInstance(Application application) {
+        if (INSTANCE == null) {
+            synchronized (PlaceRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new PlaceRepository(application);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public LiveData<List<PlaceSummary>> getAllPlaces() {
         return allPlaces;
     }
 
-    public LiveData<List<PlaceEntity>> getFavoritePlaces() {
+    public LiveData<List<PlaceSummary>> getFavoritePlaces() {
         return favoritePlaces;
     }
 
-    public PlaceEntity getPlaceByGoogleId(String googlePlaceId) {
-        try {
-            Future<PlaceEntity> future = executorService.submit(() -> placeDao.getPlaceByGoogleId(googlePlaceId));
-            return future.get(2, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            return null;
-        }
+    /**
+     * A fresh keyset paging source over favorites; pass as the factory of a Pager
+     */
+    public FavoritesPagingSource createFavoritesPagingSource() {
+        return new FavoritesPagingSource(database);
     }
 
-    public PlaceEntity getPlaceById(int id) {
-        try {
-            Future<PlaceEntity> future = executorService.submit(() -> placeDao.getPlaceById(id));
-            return future.get(2, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            return null;
-        }
+    public LiveData<FavoriteStats> getFavoriteStats() {
+        return placeDao.getFavoriteStats();
     }
 
     /**
-     * Get places synchronously (for background thread use only)
-     * 
-     * @return List of places or empty list if error
+     * The best rated places, for short featured lists
      */
-    public List<PlaceEntity> getAllPlacesSync() {
-        try {
-            Future<List<PlaceEntity>> future = executorService.submit(() -> placeDao.getAllPlacesSync());
-            return future.get(5, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return java.util.Collections.emptyList();
+    public LiveData<List<PlaceSummary>> getTopPlaces(int limit) {
+        return placeDao.getTopPlaces(limit);
+    }
+
+    /**
+     * Places carrying every one of the given tags (e.g. "Quiet" and "Free WiFi"), best
+     * rated first. Tags outside the {@link PlaceTags} vocabulary are ignored.
+     */
+    public LiveData<List<PlaceSummary>> getPlacesWithAllTags(Collection<String> tags, int limit) {
+        return placeDao.observePlacesWithAllTags(PlaceTags.maskOf(tags), limit);
+    }
+
+    public CompletableFuture<List<PlaceSummary>> getPlacesWithAllTagsAsync(Collection<String> tags, int limit) {
+        int mask = PlaceTags.maskOf(tags);
+        return CompletableFuture.supplyAsync(() -> placeDao.getPlacesWithAllTags(mask, limit), readExecutor);
+    }
+
+    /**
+     * Places inside the given map viewport, best rated first
+     */
+    public LiveData<List<PlaceSummary>> getPlacesInBounds(double minLat, double minLng, double maxLat, double maxLng,
+            int limit) {
+        return placeDao.observePlacesInBounds(minLat, minLng, maxLat, maxLng, limit);
+    }
+
+    /**
+     * How many places are stored inside the given bounds, counted on the repository thread
+     */
+    public CompletableFuture<Integer> countPlacesInBoundsAsync(double minLat, double minLng, double maxLat,
+            double maxLng) {
+        return CompletableFuture.supplyAsync(
+                () -> placeDao.countPlacesInBounds(minLat, minLng, maxLat, maxLng), readExecutor);
+    }
+
+    /**
+     * Places inside the given viewport, loaded on the repository thread
+     */
+    public CompletableFuture<List<PlaceSummary>> getPlacesInBoundsAsync(double minLat, double minLng,
+            double maxLat, double maxLng, int limit) {
+        return CompletableFuture.supplyAsync(
+                () -> placeDao.getPlacesInBounds(minLat, minLng, maxLat, maxLng, limit), readExecutor);
+    }
+
+    /**
+     * The k places closest to a point, searched within radiusKm
+     */
+    public LiveData<List<PlaceSummary>> getNearestPlaces(double lat, double lng, double radiusKm, int k) {
+        double latSpan = radiusKm / 111.0;
+        return placeDao.observeNearestInWindow(lat, lng, latSpan, PlaceDao.lngSpan(lat, latSpan),
+                PlaceDao.lngScale(lat), k);
+    }
+
+    /**
+     * Full-text search over the local cache; works offline
+     */
+    public CompletableFuture<List<PlaceEntity>> searchPlacesAsync(String query, int limit) {
+        return CompletableFuture.supplyAsync(() -> placeDao.search(query, limit), readExecutor);
+    }
+
+    // Lookups below never block the caller. Chain on the returned future with
+    // thenAcceptAsync/whenCompleteAsync and a callback executor (e.g. the main thread);
+    // a null place means no matching row.
+
+    public CompletableFuture<PlaceEntity> getPlaceByGoogleIdAsync(String googlePlaceId) {
+        return CompletableFuture.supplyAsync(() -> {
+            PlaceEntity place = placeDao.getPlaceWithDetailsByGoogleId(googlePlaceId);
+            remember(place);
+            return place;
+        }, readExecutor);
+    }
+
+    /**
+     * The place with details if it was loaded recently, without touching the database;
+     * null otherwise. Safe to call on the main thread.
+     */
+    public PlaceEntity peekPlaceByGoogleId(String googlePlaceId) {
+        return googlePlaceId != null ? placesByGoogleId.get(googlePlaceId) : null;
+    }
+
+    private void remember(PlaceEntity place) {
+        if (place != null && place.googlePlaceId != null && place.details != null) {
+            placesByGoogleId.put(place.googlePlaceId, place);
         }
     }
 
+    public CompletableFuture<PlaceEntity> getPlaceByIdAsync(int id) {
+        return CompletableFuture.supplyAsync(() -> placeDao.getPlaceWithDetails(id), readExecutor);
+    }
+
+    public CompletableFuture<List<PlaceEntity>> getAllPlacesAsync() {
+        return CompletableFuture.supplyAsync(placeDao::getAllPlacesSync, readExecutor);
+    }
+
     /**
      * Insert a place into the database
      */
     public void insertPlace(PlaceEntity place) {
-        executorService.execute(() -> placeDao.insert(place));
+        writeExecutor.execute(() -> placeDao.insertWithDetails(place));
+    }
+
+    /**
+     * Merge a partial set of results from Google in one transaction. Favorites, checkins
+     * and visit history of matching rows are kept; nothing is removed.
+     */
+    public void upsertNearbyPlaces(List<PlaceEntity> places) {
+        writeExecutor.execute(() -> placeDao.upsertNearbyPlaces(places));
+    }
+
+    /**
+     * Merge the complete answer of a nearby refresh in one transaction and record it as
+     * the latest refresh. Of the rows the previous refresh returned, those inside the
+     * searched circle around (searchLat, searchLng) and missing now are removed; rows
+     * stored by any other search stay. (userLat, userLng) is where the user was, which
+     * {@link #isNearbyCacheFreshAsync} measures later locations against.
+     */
+    public void replaceNearbyResults(List<PlaceEntity> places, double searchLat, double searchLng,
+            double radiusMeters, double userLat, double userLng) {
+        writeExecutor.execute(() -> {
+            long fetchedAt = System.currentTimeMillis();
+            long previousFetchedAt = getNearbyFetch().fetchedAt;
+            placeDao.upsertNearbyPlaces(places, fetchedAt, searchLat, searchLng, radiusMeters, previousFetchedAt);
+            markNearbyFetched(userLat, userLng, fetchedAt);
+        });
+    }
+
+    /**
+     * Whether the cached nearby results still cover this point, so the rows already on
+     * screen can be used without asking Google again. Runs on the read executor, since
+     * the first check loads the last search from preferences.
+     */
+    public CompletableFuture<Boolean> isNearbyCacheFreshAsync(double lat, double lng) {
+        return CompletableFuture.supplyAsync(() -> {
+            NearbyFetch fetch = getNearbyFetch();
+            return CachePolicy.nearbyCovers(fetch.fetchedAt, fetch.lat, fetch.lng,
+                    lat, lng, System.currentTimeMillis());
+        }, readExecutor);
+    }
+
+    private synchronized NearbyFetch getNearbyFetch() {
+        if (nearbyFetch == null) {
+            nearbyFetch = new NearbyFetch(cachePrefs.getLong(KEY_NEARBY_FETCHED_AT, 0),
+                    Double.longBitsToDouble(cachePrefs.getLong(KEY_NEARBY_LAT, 0)),
+                    Double.longBitsToDouble(cachePrefs.getLong(KEY_NEARBY_LNG, 0)));
+        }
+        return nearbyFetch;
+    }
+
+    /**
+     * Record a successful nearby refresh made from this point; fetchedAt is also the stamp
+     * of the rows it returned
+     */
+    private void markNearbyFetched(double lat, double lng, long fetchedAt) {
+        synchronized (this) {
+            nearbyFetch = new NearbyFetch(fetchedAt, lat, lng);
+        }
+        cachePrefs.edit()
+                .putLong(KEY_NEARBY_FETCHED_AT, fetchedAt)
+                .putLong(KEY_NEARBY_LAT, Double.doubleToRawLongBits(lat))
+                .putLong(KEY_NEARBY_LNG, Double.doubleToRawLongBits(lng))
+                .apply();
     }
 
     /**
      * Delete all places from the database
      */
     public void deleteAllPlaces() {
-        executorService.execute(() -> placeDao.deleteAll());
+        synchronized (this) {
+            nearbyFetch = NearbyFetch.NONE;
+        }
+        cachePrefs.edit().remove(KEY_NEARBY_FETCHED_AT).apply();
+        placesByGoogleId.evictAll();
+        writeExecutor.execute(() -> placeDao.deleteAll());
     }
 
     /**
      * Update a place in the database
      */
     public void updatePlace(PlaceEntity place) {
-        executorService.execute(() -> placeDao.update(place));
+        remember(place);
+        writeExecutor.execute(() -> placeDao.updateWithDetails(place));
+    }
+
+    /**
+     * Apply a details response to the stored row. The row is read again in the write
+     * transaction, so only the fetched fields change and local state such as favorite
+     * keeps whatever value it has by then.
+     */
+    public void applyPlaceDetails(int placeId, GooglePlacesService.GooglePlaceDetails details, int fieldGroups) {
+        writeExecutor.execute(() -> remember(placeDao.modifyPlace(placeId,
+                place -> PlaceDataConverter.updatePlaceWithDetails(place, details, fieldGroups))));
     }
 
     /**
@@ -101,17 +302,17 @@ public class PlaceRepository {
      * Also syncs with Supabase if it's a favorite
      */
     public void insertOrUpdate(PlaceEntity place) {
-        executorService.execute(() -> {
+        writeExecutor.execute(() -> {
             android.util.Log.d("PlaceRepository",
                     "insertOrUpdate called for: " + place.name + ", favorite=" + place.favorite);
             if (place.googlePlaceId != null) {
                 PlaceEntity existing = placeDao.getPlaceByGoogleId(place.googlePlaceId);
                 if (existing != null) {
                     place.id = existing.id;
-                    placeDao.update(place);
+                    placeDao.updateWithDetails(place);
                     android.util.Log.d("PlaceRepository", "Updated existing place in Room DB: " + place.name);
                 } else {
-                    placeDao.insert(place);
+                    placeDao.insertWithDetails(place);
                     android.util.Log.d("PlaceRepository", "Inserted new place in Room DB: " + place.name);
                 }
 
@@ -119,7 +320,7 @@ public class PlaceRepository {
                 android.util.Log.d("PlaceRepository", "Triggering Supabase sync for: " + place.name);
                 syncToSupabase(place);
             } else {
-                placeDao.insert(place);
+                placeDao.insertWithDetails(place);
                 android.util.Log.d("PlaceRepository", "Inserted place without Google ID");
             }
         });
@@ -148,7 +349,7 @@ public class PlaceRepository {
     public void updateLocalFavorites(List<UserFavorite> cloudFavorites) {
         android.util.Log.d("PlaceRepository",
                 "updateLocalFavorites called with " + cloudFavorites.size() + " favorites from cloud");
-        executorService.execute(() -> {
+        writeExecutor.execute(() -> {
             // Create a set of cloud Google Place IDs for quick lookup
             java.util.Set<String> cloudGoogleIds = new java.util.HashSet<>();
             for (UserFavorite fav : cloudFavorites) {
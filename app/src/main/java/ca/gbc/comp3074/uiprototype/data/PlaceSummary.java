@@ -0,0 +1,46 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lightweight projection of a place for the map, nearby list and favorites cards.
+ * Column names match {@link PlaceEntity}; see {@link PlaceDao#SUMMARY_COLUMNS}.
+ */
+public class PlaceSummary {
+
+    public int id;
+
+    public String googlePlaceId;
+
+    @NonNull
+    public String name = "";
+
+    @NonNull
+    public String type = "";
+
+    @NonNull
+    public String distance = "";
+
+    public float rating;
+
+    public int reviewCount;
+
+    public boolean favorite;
+
+    public int checkins;
+
+    @NonNull
+    public String lastVisited = "";
+
+    @NonNull
+    public String emoji = "";
+
+    @NonNull
+    public List<String> tags = new ArrayList<>();
+
+    public double latitude;
+    public double longitude;
+}
@@ -0,0 +1,74 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fixed tag vocabulary used by {@link PlaceDataConverter}, with one bit per tag.
+ * {@link PlaceEntity#tagMask} stores the bits so tag filters run as a single
+ * integer test in SQL instead of decoding every row's tag list.
+ *
+ * Bits are persisted; only append new tags, never reorder or reuse a position.
+ */
+public final class PlaceTags {
+
+    public static final String QUIET = "Quiet";
+    public static final String STUDY = "Study";
+    public static final String FREE_WIFI = "Free WiFi";
+    public static final String OUTDOOR = "Outdoor";
+    public static final String NATURE = "Nature";
+    public static final String FRESH_AIR = "Fresh Air";
+    public static final String COFFEE = "Coffee";
+    public static final String WIFI = "WiFi";
+    public static final String COZY = "Cozy";
+    public static final String CULTURAL = "Cultural";
+    public static final String EDUCATIONAL = "Educational";
+    public static final String ART = "Art";
+    public static final String INSPIRING = "Inspiring";
+    public static final String RELAXATION = "Relaxation";
+    public static final String PEACEFUL = "Peaceful";
+    public static final String CALM = "Calm";
+    public static final String MEDITATION = "Meditation";
+    public static final String FOCUS = "Focus";
+    public static final String BOOKS = "Books";
+    public static final String READING = "Reading";
+
+    /** Index in this array is the bit position */
+    static final String[] VOCABULARY = {
+            QUIET, STUDY, FREE_WIFI, OUTDOOR, NATURE, FRESH_AIR, COFFEE, WIFI, COZY, CULTURAL,
+            EDUCATIONAL, ART, INSPIRING, RELAXATION, PEACEFUL, CALM, MEDITATION, FOCUS, BOOKS, READING
+    };
+
+    private static final Map<String, Integer> BITS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < VOCABULARY.length; i++) {
+            BITS.put(VOCABULARY[i], 1 << i);
+        }
+    }
+
+    private PlaceTags() {
+    }
+
+    /**
+     * Bit for a tag, or 0 when the tag is outside the vocabulary
+     */
+    public static int bitOf(String tag) {
+        Integer bit = BITS.get(tag);
+        return bit != null ? bit : 0;
+    }
+
+    /**
+     * Combined bits of the given tags; tags outside the vocabulary are ignored
+     */
+    public static int maskOf(Collection<String> tags) {
+        int mask = 0;
+        if (tags != null) {
+            for (String tag : tags) {
+                mask |= bitOf(tag);
+            }
+        }
+        return mask;
+    }
+}
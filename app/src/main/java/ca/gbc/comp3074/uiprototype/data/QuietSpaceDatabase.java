@@ -7,28 +7,169 @@ import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-@Database(entities = { PlaceEntity.class }, version = 3, exportSchema = false)
+@Database(entities = { PlaceEntity.class, PlaceDetailsEntity.class, PlaceFtsEntity.class }, version = 10, exportSchema = true)
 @TypeConverters({ Converters.class })
 public abstract class QuietSpaceDatabase extends RoomDatabase {
 
+    static final String DATABASE_NAME = "quietspace-db";
+
     private static volatile QuietSpaceDatabase INSTANCE;
-    private static final ExecutorService databaseWriteExecutor = Executors.newSingleThreadExecutor();
 
     public abstract PlaceDao placeDao();
 
+    /**
+     * Bounding-box index for the map viewport
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_places_latitude_longitude` "
+                    + "ON `places` (`latitude`, `longitude`)");
+        }
+    };
+
+    /**
+     * External-content FTS4 table over places. Room recreates the content sync
+     * triggers itself once migrations finish, so only the table and its initial
+     * contents are built here.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `places_fts` USING FTS4("
+                    + "`name` TEXT, `type` TEXT, `description` TEXT, `address` TEXT, `tags` TEXT, "
+                    + "content=`places`)");
+            db.execSQL("INSERT INTO `places_fts`(`places_fts`) VALUES ('rebuild')");
+        }
+    };
+
+    /**
+     * Moves the cold columns into place_details. SQLite before 3.35 cannot drop
+     * columns, so places is rebuilt; ids are copied so FTS docids stay valid.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `place_details` ("
+                    + "`placeId` INTEGER NOT NULL, `phoneNumber` TEXT, `website` TEXT, "
+                    + "`openingHours` TEXT, `photoReference` TEXT, `reviews` TEXT, "
+                    + "PRIMARY KEY(`placeId`), FOREIGN KEY(`placeId`) REFERENCES `places`(`id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("INSERT INTO `place_details` "
+                    + "(`placeId`, `phoneNumber`, `website`, `openingHours`, `photoReference`, `reviews`) "
+                    + "SELECT `id`, `phoneNumber`, `website`, `openingHours`, `photoReference`, `reviews` "
+                    + "FROM `places`");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `places_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `name` TEXT NOT NULL, "
+                    + "`type` TEXT NOT NULL, `distance` TEXT NOT NULL, `rating` REAL NOT NULL, "
+                    + "`reviewCount` INTEGER NOT NULL, `favorite` INTEGER NOT NULL, "
+                    + "`checkins` INTEGER NOT NULL, `lastVisited` TEXT NOT NULL, `emoji` TEXT NOT NULL, "
+                    + "`tags` TEXT NOT NULL, `latitude` REAL NOT NULL, `longitude` REAL NOT NULL, "
+                    + "`address` TEXT, `description` TEXT, `googlePlaceId` TEXT, `priceLevel` TEXT, "
+                    + "`isOpen` INTEGER NOT NULL, `quietScore` REAL NOT NULL)");
+            db.execSQL("INSERT INTO `places_new` (" + HOT_COLUMNS + ") "
+                    + "SELECT " + HOT_COLUMNS + " FROM `places`");
+            db.execSQL("DROP TABLE `places`");
+            db.execSQL("ALTER TABLE `places_new` RENAME TO `places`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_places_latitude_longitude` "
+                    + "ON `places` (`latitude`, `longitude`)");
+        }
+    };
+
+    /**
+     * Secondary indexes for lookups by Google id and rating-ordered lists. Older
+     * builds could store the same Google place twice, so duplicates are collapsed
+     * first, keeping a favorited row over a plain one and then the oldest.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            // Places saved from the details screen used "" for a missing id
+            db.execSQL("UPDATE `places` SET `googlePlaceId` = NULL WHERE `googlePlaceId` = ''");
+            db.execSQL("DELETE FROM `places` WHERE `googlePlaceId` IS NOT NULL AND EXISTS ("
+                    + "SELECT 1 FROM `places` AS p WHERE p.`googlePlaceId` = `places`.`googlePlaceId` "
+                    + "AND (p.`favorite` > `places`.`favorite` "
+                    + "OR (p.`favorite` = `places`.`favorite` AND p.`id` < `places`.`id`)))");
+            // Foreign keys are off while migrating, so clean up what the cascade would have
+            db.execSQL("DELETE FROM `place_details` WHERE `placeId` NOT IN (SELECT `id` FROM `places`)");
+            db.execSQL("INSERT INTO `places_fts`(`places_fts`) VALUES ('rebuild')");
+
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_places_googlePlaceId` "
+                    + "ON `places` (`googlePlaceId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_places_favorite_rating` "
+                    + "ON `places` (`favorite`, `rating`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_places_rating` ON `places` (`rating`)");
+        }
+    };
+
+    /**
+     * Tag bitmask for SQL-side tag filters, backfilled from the stored tag strings.
+     * Each stored tag is matched whole, so "WiFi" does not match "Free WiFi".
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `places` ADD COLUMN `tagMask` INTEGER NOT NULL DEFAULT 0");
+            for (int i = 0; i < PlaceTags.VOCABULARY.length; i++) {
+                db.execSQL("UPDATE `places` SET `tagMask` = `tagMask` | ? "
+                        + "WHERE instr('|' || `tags` || '|', ?) > 0",
+                        new Object[] { 1 << i, "|" + PlaceTags.VOCABULARY[i] + "|" });
+            }
+        }
+    };
+
+    /**
+     * Fetch timestamps for stale-while-revalidate. Existing rows start at 0, so they are
+     * shown as before and refreshed the next time they are needed.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `places` ADD COLUMN `fetchedAt` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `place_details` ADD COLUMN `fetchedAt` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * Separate fetch times for opening hours and reviews, which go stale sooner than the
+     * rest of the details. Existing details only count as fresh for the basic fields.
+     */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `place_details` ADD COLUMN `hoursFetchedAt` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `place_details` ADD COLUMN `reviewsFetchedAt` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    static final Migration[] MIGRATIONS = {
+            MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9,
+            MIGRATION_9_10
+    };
+
+    private static final String HOT_COLUMNS = "`id`, `name`, `type`, `distance`, `rating`, "
+            + "`reviewCount`, `favorite`, `checkins`, `lastVisited`, `emoji`, `tags`, `latitude`, "
+            + "`longitude`, `address`, `description`, `googlePlaceId`, `priceLevel`, `isOpen`, "
+            + "`quietScore`";
+
     public static QuietSpaceDatabase getInstance(Context context) {
         if (INSTANCE == null) {
             synchronized (QuietSpaceDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                             QuietSpaceDatabase.class,
-                            "quietspace-db")
-                            .fallbackToDestructiveMigration()
+                            DATABASE_NAME)
+                            // WAL lets the reader pool run while the single writer commits
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                            .setQueryExecutor(AppExecutors.getInstance().diskRead())
+                            .setTransactionExecutor(AppExecutors.getInstance().diskWrite())
+                            .addMigrations(MIGRATIONS)
+                            // Schemas older than v3 were never shipped with data worth keeping
+                            .fallbackToDestructiveMigrationFrom(1, 2)
                             .build();
                 }
             }
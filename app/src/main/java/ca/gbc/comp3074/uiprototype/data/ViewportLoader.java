@@ -0,0 +1,291 @@
+package ca.gbc.comp3074.uiprototype.data;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import ca.gbc.comp3074.uiprototype.api.CallHandle;
+import ca.gbc.comp3074.uiprototype.api.GeoHash;
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService;
+import ca.gbc.comp3074.uiprototype.utils.AppConfig;
+
+/**
+ * Loads places for whatever part of the map is on screen. Once the camera has rested
+ * for a moment, the viewport is covered with a few geohash tiles sized from the zoom
+ * level, and only tiles not loaded yet are searched. A tile counts as loaded for the
+ * nearby cache TTL, and only while Room still holds the places it returned, since a
+ * later nearby refresh may have pruned them. Searches for tiles the user has panned
+ * away from are cancelled. Results go to Room, and the map follows from there.
+ *
+ * Each tile search fans out to every quiet place type, so tiles are answered from the
+ * nearby tile cache first, and at most MAX_TILE_SEARCHES go to Google at a time, nearest
+ * to the middle of the screen first. The rest wait for a later camera idle, which keeps
+ * panning around from eating the daily nearby budget.
+ *
+ * Everything here runs on the main thread.
+ */
+class ViewportLoader {
+    private static final String TAG = "ViewportLoader";
+
+    private static final long DEBOUNCE_MS = 400;
+    // Further out a viewport spans whole cities; the map shows what is stored instead
+    private static final float MIN_LOAD_ZOOM = 11f;
+    private static final int MAX_TILES = 6;
+    // Tile searches running against Google at once; each costs one request per place type
+    private static final int MAX_TILE_SEARCHES = 2;
+    // Tile precisions to pick from, finest first: about 1.2 km, 4.9 km and 39 km tiles
+    private static final int FINEST_TILE_PRECISION = 6;
+    private static final int COARSEST_TILE_PRECISION = 4;
+    private static final int MIN_RADIUS_METERS = 500;
+    private static final int MAX_RADIUS_METERS = 50000;
+    // Tiles loaded in this session; bounded so a long exploration does not grow it forever
+    private static final int MAX_REMEMBERED_TILES = 256;
+
+    /**
+     * The viewport the map should show places for
+     */
+    interface ViewportListener {
+        void onViewportChanged(LatLngBounds bounds);
+    }
+
+    private final GooglePlacesService placesService;
+    private final PlaceRepository placeRepository;
+    private final GoogleMap map;
+    private final ViewportListener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable load = this::loadViewport;
+
+    private final LruCache<String, LoadedTile> loadedTiles = new LruCache<>(MAX_REMEMBERED_TILES);
+    private final Map<String, CallHandle> inFlight = new HashMap<>();
+    // Tiles being checked against Room or the tile cache before deciding to search them,
+    // each with a token so an answer for a tile the user left is ignored
+    private final Map<String, Object> checking = new HashMap<>();
+    // Some tiles on screen were left for later because enough searches were running
+    private boolean tilesDeferred;
+
+    private static final class LoadedTile {
+        final long loadedAt;
+        final boolean hadPlaces;
+
+        LoadedTile(long loadedAt, boolean hadPlaces) {
+            this.loadedAt = loadedAt;
+            this.hadPlaces = hadPlaces;
+        }
+    }
+
+    ViewportLoader(GooglePlacesService placesService, PlaceRepository placeRepository, GoogleMap map,
+            ViewportListener listener) {
+        this.placesService = placesService;
+        this.placeRepository = placeRepository;
+        this.map = map;
+        this.listener = listener;
+    }
+
+    /**
+     * Restarts the debounce; the viewport is loaded once the camera stays put
+     */
+    void onCameraIdle() {
+        mainHandler.removeCallbacks(load);
+        mainHandler.postDelayed(load, DEBOUNCE_MS);
+    }
+
+    /**
+     * Loads the current viewport straight away
+     */
+    void loadNow() {
+        mainHandler.removeCallbacks(load);
+        loadViewport();
+    }
+
+    void cancel() {
+        mainHandler.removeCallbacks(load);
+        for (CallHandle handle : inFlight.values()) {
+            handle.cancel();
+        }
+        inFlight.clear();
+        checking.clear();
+    }
+
+    private void loadViewport() {
+        LatLngBounds bounds = map.getProjection().getVisibleRegion().latLngBounds;
+        listener.onViewportChanged(bounds);
+
+        List<String> tiles = map.getCameraPosition().zoom >= MIN_LOAD_ZOOM
+                ? tilesFor(bounds) : Collections.emptyList();
+
+        // The user has left these tiles
+        Iterator<Map.Entry<String, CallHandle>> iterator = inFlight.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CallHandle> entry = iterator.next();
+            if (!tiles.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                iterator.remove();
+            }
+        }
+
+        checking.keySet().retainAll(tiles);
+
+        long now = System.currentTimeMillis();
+        List<String> toLoad = new ArrayList<>();
+        for (String tile : tiles) {
+            if (inFlight.containsKey(tile) || checking.containsKey(tile)) {
+                continue;
+            }
+            LoadedTile loaded = loadedTiles.get(tile);
+            if (loaded == null || !CachePolicy.isFresh(loaded.loadedAt, AppConfig.NEARBY_CACHE_TTL_MS, now)) {
+                toLoad.add(tile);
+            } else if (loaded.hadPlaces) {
+                loadTileIfPruned(tile);
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            LatLng middle = bounds.getCenter();
+            toLoad.sort(Comparator.comparingDouble(tile -> distanceTo(middle, tile)));
+            loadTiles(toLoad);
+        }
+    }
+
+    private static double distanceTo(LatLng point, String tile) {
+        double[] center = GeoHash.center(tile);
+        float[] distance = new float[1];
+        Location.distanceBetween(point.latitude, point.longitude, center[0], center[1], distance);
+        return distance[0];
+    }
+
+    /**
+     * Loads tiles, given nearest first, from the tile cache where it has them; the rest are
+     * searched while fewer than MAX_TILE_SEARCHES searches run
+     */
+    private void loadTiles(List<String> tiles) {
+        Object check = new Object();
+        for (String tile : tiles) {
+            checking.put(tile, check);
+        }
+        AppExecutors.getInstance().background().execute(() -> {
+            Map<String, List<GooglePlacesService.GooglePlace>> cached = new HashMap<>();
+            for (String tile : tiles) {
+                double[] center = GeoHash.center(tile);
+                List<GooglePlacesService.GooglePlace> places =
+                        placesService.cachedQuietPlaces(center[0], center[1], radiusFor(tile));
+                if (places != null) {
+                    cached.put(tile, places);
+                }
+            }
+            mainHandler.post(() -> {
+                for (String tile : tiles) {
+                    if (checking.get(tile) != check) {
+                        continue;
+                    }
+                    checking.remove(tile);
+                    List<GooglePlacesService.GooglePlace> places = cached.get(tile);
+                    if (places != null) {
+                        placeRepository.upsertNearbyPlaces(PlaceDataConverter.convertGooglePlacesToEntities(places));
+                        loadedTiles.put(tile, new LoadedTile(System.currentTimeMillis(), !places.isEmpty()));
+                    } else if (!inFlight.containsKey(tile)) {
+                        if (inFlight.size() < MAX_TILE_SEARCHES) {
+                            loadTile(tile);
+                        } else {
+                            tilesDeferred = true;
+                        }
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Searches a loaded tile again if Room no longer holds any place inside it
+     */
+    private void loadTileIfPruned(String tile) {
+        double[] b = GeoHash.bounds(tile);
+        Object check = new Object();
+        checking.put(tile, check);
+        placeRepository.countPlacesInBoundsAsync(b[0], b[1], b[2], b[3])
+                .thenAccept(count -> mainHandler.post(() -> {
+                    if (checking.get(tile) != check) {
+                        return;
+                    }
+                    checking.remove(tile);
+                    if (count == 0 && !inFlight.containsKey(tile)) {
+                        loadedTiles.remove(tile);
+                        loadTiles(Collections.singletonList(tile));
+                    }
+                }));
+    }
+
+    /**
+     * The finest tiles that cover the viewport in at most MAX_TILES searches
+     */
+    private static List<String> tilesFor(LatLngBounds bounds) {
+        for (int precision = FINEST_TILE_PRECISION; precision >= COARSEST_TILE_PRECISION; precision--) {
+            List<String> tiles = GeoHash.cover(bounds.southwest.latitude, bounds.southwest.longitude,
+                    bounds.northeast.latitude, bounds.northeast.longitude, precision, MAX_TILES);
+            if (tiles != null) {
+                return tiles;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Search radius for a tile: enough to cover it, so the radius follows the zoom level
+     * through the tile size and stays the same for every visit to the tile
+     */
+    private static int radiusFor(String tile) {
+        int radius = (int) Math.ceil(GeoHash.cellRadiusMeters(tile.length()));
+        return Math.max(MIN_RADIUS_METERS, Math.min(MAX_RADIUS_METERS, radius));
+    }
+
+    private void loadTile(String tile) {
+        double[] center = GeoHash.center(tile);
+        CallHandle[] handle = new CallHandle[1];
+        handle[0] = placesService.searchQuietPlaces(center[0], center[1], radiusFor(tile),
+                new GooglePlacesService.NearbySearchCallback() {
+                    @Override
+                    public void onSuccess(List<GooglePlacesService.GooglePlace> places, boolean complete,
+                            boolean cached) {
+                        // Partial by nature: other tiles hold the rest, so nothing is pruned
+                        placeRepository.upsertNearbyPlaces(PlaceDataConverter.convertGooglePlacesToEntities(places));
+                        mainHandler.post(() -> {
+                            finish(tile, handle[0]);
+                            if (complete) {
+                                // Partial tiles are tried again on the next visit
+                                loadedTiles.put(tile, new LoadedTile(System.currentTimeMillis(), !places.isEmpty()));
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        Log.w(TAG, "Could not load tile " + tile + ": " + error);
+                        mainHandler.post(() -> finish(tile, handle[0]));
+                    }
+                });
+        inFlight.put(tile, handle[0]);
+    }
+
+    private void finish(String tile, CallHandle handle) {
+        if (inFlight.get(tile) == handle) {
+            inFlight.remove(tile);
+        }
+        if (tilesDeferred) {
+            // A search slot is free, so the rest of a viewport the user stays on fills in
+            tilesDeferred = false;
+            onCameraIdle();
+        }
+    }
+}
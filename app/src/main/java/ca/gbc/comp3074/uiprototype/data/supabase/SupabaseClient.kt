@@ -1,6 +1,7 @@
 package ca.gbc.comp3074.uiprototype.data.supabase
 
 import android.content.Context
+import ca.gbc.comp3074.uiprototype.api.HttpClientProvider
 import io.github.jan.supabase.SupabaseClient
 import io.github.jan.supabase.createSupabaseClient
 import io.github.jan.supabase.gotrue.Auth
@@ -9,6 +10,7 @@ import io.github.jan.supabase.postgrest.Postgrest
 import io.github.jan.supabase.postgrest.postgrest
 import io.github.jan.supabase.storage.Storage
 import io.github.jan.supabase.storage.storage
+import io.ktor.client.engine.okhttp.OkHttp
 
 /**
  * Singleton object to manage Supabase client instance
@@ -31,6 +33,8 @@ object SupabaseClientManager {
                     supabaseUrl = SUPABASE_URL,
                     supabaseKey = SUPABASE_KEY
                 ) {
+                    // Reuse the app's OkHttpClient so Supabase shares its connection pool and dispatcher
+                    httpEngine = OkHttp.create { preconfigured = HttpClientProvider.get() }
                     install(Auth)
                     install(Postgrest)
                     install(Storage)
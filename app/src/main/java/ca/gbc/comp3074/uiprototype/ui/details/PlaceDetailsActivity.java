@@ -11,6 +11,7 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
+import androidx.core.content.ContextCompat;
 import androidx.core.view.WindowCompat;
 
 import com.google.android.material.appbar.MaterialToolbar;
@@ -24,6 +25,10 @@ import java.util.List;
 
 import ca.gbc.comp3074.uiprototype.R;
 import ca.gbc.comp3074.uiprototype.api.GooglePlacesService;
+import ca.gbc.comp3074.uiprototype.api.PlaceDetailsFields;
+import ca.gbc.comp3074.uiprototype.data.CachePolicy;
+import ca.gbc.comp3074.uiprototype.data.PlaceDataConverter;
+import ca.gbc.comp3074.uiprototype.data.PlaceDetailsEntity;
 import ca.gbc.comp3074.uiprototype.data.PlaceEntity;
 import ca.gbc.comp3074.uiprototype.data.PlaceRepository;
 import ca.gbc.comp3074.uiprototype.utils.AppConfig;
@@ -71,7 +76,7 @@ public class PlaceDetailsActivity extends AppCompatActivity {
         initViews();
         setupToolbar();
 
-        placeRepository = new PlaceRepository(getApplication());
+        placeRepository = PlaceRepository.getInstance(getApplication());
         placesService = new GooglePlacesService();
 
         // Get place ID from intent
@@ -131,34 +136,61 @@ public class PlaceDetailsActivity extends AppCompatActivity {
     }
 
     private void loadPlaceFromDatabase(int placeId) {
-        new Thread(() -> {
-            currentPlace = placeRepository.getPlaceById(placeId);
-            runOnUiThread(() -> {
-                if (currentPlace != null) {
-                    displayPlaceDetailsFromEntity(currentPlace);
-                    updateFavoriteButtonState();
-                } else {
-                    Toast.makeText(this, "Place not found in database", Toast.LENGTH_SHORT).show();
-                    finish();
-                }
-            });
-        }).start();
+        placeRepository.getPlaceByIdAsync(placeId).whenCompleteAsync((place, error) -> {
+            if (isFinishing() || isDestroyed())
+                return;
+            currentPlace = place;
+            if (currentPlace != null) {
+                displayPlaceDetailsFromEntity(currentPlace);
+                updateFavoriteButtonState();
+            } else {
+                Toast.makeText(this, "Place not found in database", Toast.LENGTH_SHORT).show();
+                finish();
+            }
+        }, ContextCompat.getMainExecutor(this));
     }
 
     private void loadPlaceFromGoogle(String googlePlaceId) {
-        // Check if we already have this place in our database
-        new Thread(() -> {
-            PlaceEntity existingPlace = placeRepository.getPlaceByGoogleId(googlePlaceId);
+        // Draw the first frame from memory when the place was opened or prefetched recently
+        PlaceEntity remembered = placeRepository.peekPlaceByGoogleId(googlePlaceId);
+        if (remembered != null) {
+            currentPlace = remembered;
+            displayPlaceDetailsFromEntity(remembered);
+            updateFavoriteButtonState();
+        }
+
+        // Then the stored copy; only the field groups past their TTL go to Google
+        placeRepository.getPlaceByGoogleIdAsync(googlePlaceId).whenCompleteAsync((existingPlace, lookupError) -> {
+            if (isFinishing() || isDestroyed())
+                return;
+            int staleFields = PlaceDetailsFields.ALL;
             if (existingPlace != null) {
                 currentPlace = existingPlace;
+                displayPlaceDetailsFromEntity(existingPlace);
+                updateFavoriteButtonState();
+                staleFields = CachePolicy.staleDetailFields(existingPlace.details, System.currentTimeMillis());
+                if (staleFields == 0) {
+                    return;
+                }
             }
+            final int requestedFields = staleFields;
 
-            placesService.getPlaceDetails(googlePlaceId, new GooglePlacesService.PlaceDetailsCallback() {
+            placesService.getPlaceDetails(googlePlaceId, requestedFields, new GooglePlacesService.PlaceDetailsCallback() {
                 @Override
                 public void onSuccess(GooglePlacesService.GooglePlaceDetails placeDetails) {
                     currentGooglePlaceDetails = placeDetails;
                     runOnUiThread(() -> {
-                        displayPlaceDetails(placeDetails);
+                        if (isFinishing() || isDestroyed())
+                            return;
+                        // Keep the cached row current so the next open needs no network call
+                        if (currentPlace != null && currentPlace.id != 0) {
+                            PlaceDataConverter.updatePlaceWithDetails(currentPlace, placeDetails, requestedFields);
+                            placeRepository.updatePlace(currentPlace);
+                            // A partial answer only carries the refreshed groups
+                            displayPlaceDetailsFromEntity(currentPlace);
+                        } else {
+                            displayPlaceDetails(placeDetails);
+                        }
                         updateFavoriteButtonState();
                     });
                 }
@@ -180,8 +212,8 @@ public class PlaceDetailsActivity extends AppCompatActivity {
                         }
                     });
                 }
-            });
-        }).start();
+            }).bindTo(this);
+        }, ContextCompat.getMainExecutor(this));
     }
 
     private void displayPlaceDetails(GooglePlacesService.GooglePlaceDetails details) {
@@ -458,24 +490,32 @@ public class PlaceDetailsActivity extends AppCompatActivity {
         currentPlace.quietScore = quietScore;
 
         if (currentGooglePlaceDetails.photos != null && !currentGooglePlaceDetails.photos.isEmpty()) {
-            currentPlace.photoReference = currentGooglePlaceDetails.photos.get(0).photoReference;
+            currentPlace.details.photoReference = currentGooglePlaceDetails.photos.get(0).photoReference;
         }
     }
 
     private void displayPlaceDetailsFromEntity(PlaceEntity place) {
+        // Cold fields are loaded with the place from place_details and may be missing
+        PlaceDetailsEntity details = place.details != null ? place.details : new PlaceDetailsEntity();
+
         placeName.setText(place.name);
         placeAddress.setText(place.address != null ? place.address : "Address not available");
         placeRating.setText(String.format("⭐ %.1f", place.rating));
         placeReviews.setText(String.format("(%d reviews)", place.reviewCount));
 
-        if (place.phoneNumber != null) {
-            placePhone.setText(place.phoneNumber);
+        if (details.phoneNumber != null) {
+            placePhone.setText(details.phoneNumber);
             placePhone.setVisibility(View.VISIBLE);
             callButton.setVisibility(View.VISIBLE);
         }
 
-        if (place.openingHours != null) {
-            placeHours.setText(place.openingHours);
+        if (details.openingHours != null) {
+            placeHours.setText(details.openingHours);
+        }
+
+        if (details.reviews != null && !details.reviews.isEmpty()) {
+            placeReviewsText.setText(details.reviews);
+            placeReviewsText.setVisibility(View.VISIBLE);
         }
 
         placeType.setText(place.type);
@@ -485,10 +525,10 @@ public class PlaceDetailsActivity extends AppCompatActivity {
         addTagsForPlaceType(place.type);
 
         // Load image if available
-        if (place.photoReference != null && !place.photoReference.isEmpty()) {
+        if (details.photoReference != null && !details.photoReference.isEmpty()) {
             String photoUrl = "https://maps.googleapis.com/maps/api/place/photo" +
                     "?maxwidth=800" +
-                    "&photo_reference=" + place.photoReference +
+                    "&photo_reference=" + details.photoReference +
                     "&key=" + AppConfig.GOOGLE_PLACES_API_KEY;
 
             Glide.with(this)
@@ -506,10 +546,10 @@ public class PlaceDetailsActivity extends AppCompatActivity {
         });
 
         // Setup basic buttons (call/directions)
-        if (place.phoneNumber != null) {
+        if (details.phoneNumber != null) {
             callButton.setOnClickListener(v -> {
                 Intent callIntent = new Intent(Intent.ACTION_DIAL);
-                callIntent.setData(Uri.parse("tel:" + place.phoneNumber));
+                callIntent.setData(Uri.parse("tel:" + details.phoneNumber));
                 startActivity(callIntent);
             });
         }
@@ -8,22 +8,46 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 import ca.gbc.comp3074.uiprototype.R;
-import ca.gbc.comp3074.uiprototype.data.PlaceEntity;
+import ca.gbc.comp3074.uiprototype.data.PlaceSummary;
 
-public class FavoritesAdapter extends RecyclerView.Adapter<FavoritesAdapter.FavoritesViewHolder> {
+public class FavoritesAdapter extends PagingDataAdapter<PlaceSummary, FavoritesAdapter.FavoritesViewHolder> {
 
-    private final List<PlaceEntity> data = new ArrayList<>();
+    private static final DiffUtil.ItemCallback<PlaceSummary> DIFF_CALLBACK = new DiffUtil.ItemCallback<PlaceSummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull PlaceSummary oldItem, @NonNull PlaceSummary newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull PlaceSummary oldItem, @NonNull PlaceSummary newItem) {
+            return Float.compare(oldItem.rating, newItem.rating) == 0
+                    && oldItem.reviewCount == newItem.reviewCount
+                    && oldItem.checkins == newItem.checkins
+                    && oldItem.name.equals(newItem.name)
+                    && oldItem.type.equals(newItem.type)
+                    && oldItem.distance.equals(newItem.distance)
+                    && oldItem.lastVisited.equals(newItem.lastVisited)
+                    && oldItem.emoji.equals(newItem.emoji)
+                    && oldItem.tags.equals(newItem.tags)
+                    && Objects.equals(oldItem.googlePlaceId, newItem.googlePlaceId);
+        }
+    };
+
+    public FavoritesAdapter() {
+        super(DIFF_CALLBACK);
+    }
 
     @NonNull
     @Override
@@ -35,20 +59,10 @@ public class FavoritesAdapter extends RecyclerView.Adapter<FavoritesAdapter.Favo
 
     @Override
     public void onBindViewHolder(@NonNull FavoritesViewHolder holder, int position) {
-        holder.bind(data.get(position));
-    }
-
-    @Override
-    public int getItemCount() {
-        return data.size();
-    }
-
-    public void submitList(List<PlaceEntity> favorites) {
-        data.clear();
-        if (favorites != null) {
-            data.addAll(favorites);
+        PlaceSummary place = getItem(position);
+        if (place != null) {
+            holder.bind(place);
         }
-        notifyDataSetChanged();
     }
 
     static class FavoritesViewHolder extends RecyclerView.ViewHolder {
@@ -78,7 +92,7 @@ public class FavoritesAdapter extends RecyclerView.Adapter<FavoritesAdapter.Favo
             tagGroup = itemView.findViewById(R.id.tagContainer);
         }
 
-        void bind(PlaceEntity place) {
+        void bind(PlaceSummary place) {
             Context context = itemView.getContext();
             emoji.setText(place.emoji);
             name.setText(place.name);
@@ -15,10 +15,8 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.snackbar.Snackbar;
 
-import java.util.List;
-
 import ca.gbc.comp3074.uiprototype.R;
-import ca.gbc.comp3074.uiprototype.data.PlaceEntity;
+import ca.gbc.comp3074.uiprototype.data.FavoriteStats;
 import ca.gbc.comp3074.uiprototype.ui.main.MainActivity;
 
 public class FavoritesFragment extends Fragment {
@@ -49,15 +47,18 @@ public class FavoritesFragment extends Fragment {
         favoritesList.setAdapter(adapter);
 
         FavoritesViewModel viewModel = new ViewModelProvider(this).get(FavoritesViewModel.class);
-        viewModel.getFavorites().observe(getViewLifecycleOwner(), favoritePlaces -> {
-            updateStats(subtitle, statFav, statCheckins, statReviews, favoritePlaces);
-            if (favoritePlaces == null || favoritePlaces.isEmpty()) {
+        viewModel.getFavorites().observe(getViewLifecycleOwner(),
+                pagingData -> adapter.submitData(getViewLifecycleOwner().getLifecycle(), pagingData));
+
+        // Counts come from an aggregate query, the list itself is paged
+        viewModel.getStats().observe(getViewLifecycleOwner(), stats -> {
+            updateStats(subtitle, statFav, statCheckins, statReviews, stats);
+            if (stats == null || stats.favoriteCount == 0) {
                 emptyState.setVisibility(View.VISIBLE);
                 favoritesList.setVisibility(View.GONE);
             } else {
                 emptyState.setVisibility(View.GONE);
                 favoritesList.setVisibility(View.VISIBLE);
-                adapter.submitList(favoritePlaces);
             }
         });
 
@@ -76,16 +77,10 @@ public class FavoritesFragment extends Fragment {
             TextView statFav,
             TextView statCheckins,
             TextView statReviews,
-            List<PlaceEntity> favorites) {
-        int favoritesCount = favorites == null ? 0 : favorites.size();
-        int totalCheckins = 0;
-        int totalReviews = 0;
-        if (favorites != null) {
-            for (PlaceEntity place : favorites) {
-                totalCheckins += place.checkins;
-                totalReviews += place.reviewCount;
-            }
-        }
+            FavoriteStats stats) {
+        int favoritesCount = stats == null ? 0 : stats.favoriteCount;
+        int totalCheckins = stats == null ? 0 : stats.totalCheckins;
+        int totalReviews = stats == null ? 0 : stats.totalReviews;
 
         subtitle.setText(getString(R.string.favorites_subtitle, favoritesCount));
         statFav.setText(String.valueOf(favoritesCount));
@@ -97,10 +92,10 @@ public class FavoritesFragment extends Fragment {
         header.post(() -> {
             header.animate().alpha(1f).translationY(0f).setDuration(600)
                     .setInterpolator(new android.view.animation.DecelerateInterpolator()).start();
-            if (scroll instanceof androidx.core.widget.NestedScrollView) {
-                androidx.core.widget.NestedScrollView nsv = (androidx.core.widget.NestedScrollView) scroll;
-                if (nsv.getChildCount() > 0) {
-                    View content = nsv.getChildAt(0);
+            if (scroll instanceof android.view.ViewGroup) {
+                android.view.ViewGroup container = (android.view.ViewGroup) scroll;
+                if (container.getChildCount() > 0) {
+                    View content = container.getChildAt(0);
                     content.animate().alpha(1f).translationY(0f).setStartDelay(200).setDuration(600)
                             .setInterpolator(new android.view.animation.OvershootInterpolator()).start();
                 }
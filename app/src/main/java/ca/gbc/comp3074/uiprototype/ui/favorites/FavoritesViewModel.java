@@ -5,24 +5,42 @@ import android.app.Application;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
-
-import java.util.List;
-
-import ca.gbc.comp3074.uiprototype.data.PlaceEntity;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+
+import ca.gbc.comp3074.uiprototype.data.FavoriteStats;
+import ca.gbc.comp3074.uiprototype.data.FavoritesPagingSource;
 import ca.gbc.comp3074.uiprototype.data.PlaceRepository;
+import ca.gbc.comp3074.uiprototype.data.PlaceSummary;
 
 public class FavoritesViewModel extends AndroidViewModel {
 
+    private static final int PAGE_SIZE = 20;
+
     private final PlaceRepository repository;
-    private final LiveData<List<PlaceEntity>> favorites;
+    private final LiveData<PagingData<PlaceSummary>> favorites;
+    private final LiveData<FavoriteStats> stats;
 
     public FavoritesViewModel(@NonNull Application application) {
         super(application);
-        repository = new PlaceRepository(application);
-        favorites = repository.getFavoritePlaces();
+        repository = PlaceRepository.getInstance(application);
+
+        Pager<FavoritesPagingSource.Key, PlaceSummary> pager = new Pager<>(
+                new PagingConfig(PAGE_SIZE, PAGE_SIZE / 2, false),
+                repository::createFavoritesPagingSource);
+        favorites = PagingLiveData.cachedIn(PagingLiveData.getLiveData(pager),
+                ViewModelKt.getViewModelScope(this));
+        stats = repository.getFavoriteStats();
     }
 
-    public LiveData<List<PlaceEntity>> getFavorites() {
+    public LiveData<PagingData<PlaceSummary>> getFavorites() {
         return favorites;
     }
+
+    public LiveData<FavoriteStats> getStats() {
+        return stats;
+    }
 }
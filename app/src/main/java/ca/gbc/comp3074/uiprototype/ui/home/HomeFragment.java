@@ -8,6 +8,8 @@ import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
 import android.location.Location;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.View;
 import android.view.animation.DecelerateInterpolator;
@@ -25,9 +27,6 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationCallback;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
@@ -45,12 +44,17 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
 import ca.gbc.comp3074.uiprototype.R;
+import ca.gbc.comp3074.uiprototype.api.CallHandle;
 import ca.gbc.comp3074.uiprototype.api.GoogleDirectionsService;
+import ca.gbc.comp3074.uiprototype.api.RouteGeometry;
+import ca.gbc.comp3074.uiprototype.data.LocationPipeline;
 import ca.gbc.comp3074.uiprototype.data.MapDataManager;
-import ca.gbc.comp3074.uiprototype.data.PlaceEntity;
+import ca.gbc.comp3074.uiprototype.data.PlaceDetailsPrefetcher;
+import ca.gbc.comp3074.uiprototype.data.PlaceSummary;
 import ca.gbc.comp3074.uiprototype.ui.main.MainActivity;
 import ca.gbc.comp3074.uiprototype.ui.details.PlaceDetailsActivity;
 import ca.gbc.comp3074.uiprototype.ui.map.NearbyLocationAdapter;
+import ca.gbc.comp3074.uiprototype.utils.AppConfig;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -60,21 +64,36 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
     private GoogleMap mMap;
     private FusedLocationProviderClient fusedLocationClient;
     private MapDataManager mapDataManager;
+    private PlaceDetailsPrefetcher detailsPrefetcher;
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1;
+    private static final int MAX_NEARBY_PLACES = 10;
+    // Space kept around a route when the camera fits it
+    private static final int ROUTE_PADDING_PX = 100;
+    // A route counts as followed to its end this close to the destination
+    private static final float ARRIVAL_RADIUS_METERS = 30f;
+    // A route left on screen stops holding GPS on after this long
+    private static final long NAVIGATION_TIMEOUT_MS = 60 * 60 * 1000;
     private RecyclerView nearbyLocationsRecyclerView;
     private NearbyLocationAdapter nearbyLocationAdapter;
-    private HashMap<LatLng, Marker> locationMarkers = new HashMap<>();
+    // Sample location markers by locationKey
+    private HashMap<String, Marker> locationMarkers = new HashMap<>();
     private Marker selectedMarker;
 
     private GoogleDirectionsService directionsService;
+    // Route request on the way; a new navigation supersedes it
+    private CallHandle directionsCall;
     private List<com.google.android.gms.maps.model.Polyline> currentPolylines = new ArrayList<>();
     private LatLng pendingNavigationTarget;
     private String pendingNavigationName;
+    // Destination of the route on screen, null when there is none
+    private LatLng navigationDestination;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable navigationTimeout = this::endNavigation;
 
     private Marker currentLocationMarker;
 
-    private LocationCallback locationCallback;
-    private LocationRequest locationRequest;
+    // Balanced while the map is shown, high accuracy while a route is, nothing while hidden
+    private LocationPipeline locationPipeline;
 
     public HomeFragment() {
         super(R.layout.fragment_home);
@@ -84,28 +103,29 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        // Initialize location request
-        locationRequest = LocationRequest.create();
-        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
-        locationRequest.setInterval(10000); // 10 seconds
-        locationRequest.setFastestInterval(5000); // 5 seconds
-
-        // Initialize location callback
-        locationCallback = new LocationCallback() {
-            @Override
-            public void onLocationResult(@NonNull LocationResult locationResult) {
-                if (locationResult == null) {
-                    return;
-                }
-                for (Location location : locationResult.getLocations()) {
-                    if (location != null) {
-                        LatLng userLocation = new LatLng(location.getLatitude(), location.getLongitude());
-                        currentLocation = userLocation;
-                        updateCurrentLocationMarker(userLocation);
+        locationPipeline = new LocationPipeline(requireContext(), AppConfig.LOCATION_REFRESH_DISTANCE_METERS,
+                new LocationPipeline.Listener() {
+                    @Override
+                    public void onLocation(LatLng location) {
+                        currentLocation = location;
+                        updateCurrentLocationMarker(location);
+                        if (navigationDestination != null
+                                && distanceMeters(location, navigationDestination) <= ARRIVAL_RADIUS_METERS) {
+                            endNavigation();
+                            if (isAdded()) {
+                                Toast.makeText(requireContext(), "You have arrived", Toast.LENGTH_SHORT).show();
+                            }
+                        }
                     }
-                }
-            }
-        };
+
+                    @Override
+                    public void onRefreshLocation(LatLng location) {
+                        // Only once the user has left the area the last fetch covered
+                        if (mapDataManager != null) {
+                            mapDataManager.updateLocation(location);
+                        }
+                    }
+                });
     }
 
     @Override
@@ -118,6 +138,16 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
             View bottomSheet = view.findViewById(R.id.nearbyLocationsCard);
             nearbyLocationsRecyclerView = view.findViewById(R.id.nearbyLocationsRecyclerView);
 
+            // Initialize map data manager before the nearby list starts observing it
+            try {
+                mapDataManager = new MapDataManager(requireContext());
+                detailsPrefetcher = new PlaceDetailsPrefetcher(requireContext());
+            } catch (Exception e) {
+                Log.e("HomeFragment", "MapDataManager initialization failed", e);
+                Toast.makeText(requireContext(), "Failed to initialize map data: " + e.getMessage(), Toast.LENGTH_SHORT)
+                        .show();
+            }
+
             // Set up RecyclerView with horizontal layout
             if (nearbyLocationsRecyclerView != null) {
                 LinearLayoutManager layoutManager = new LinearLayoutManager(
@@ -149,15 +179,6 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
             // Initialize location client
             fusedLocationClient = LocationServices.getFusedLocationProviderClient(requireActivity());
 
-            // Initialize map data manager
-            try {
-                mapDataManager = new MapDataManager(requireContext());
-            } catch (Exception e) {
-                Log.e("HomeFragment", "MapDataManager initialization failed", e);
-                Toast.makeText(requireContext(), "Failed to initialize map data: " + e.getMessage(), Toast.LENGTH_SHORT)
-                        .show();
-            }
-
             // Set up interactions
             if (editSearch != null) {
                 editSearch.setOnFocusChangeListener((v, hasFocus) -> {
@@ -199,10 +220,13 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
                 }
 
                 // Find and highlight the marker for this location
-                Marker marker = locationMarkers.get(location.getPosition());
+                Marker marker = locationMarkers.get(locationKey(location));
                 if (marker != null) {
                     marker.setIcon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_GREEN));
                     selectedMarker = marker;
+                } else if (mapDataManager != null) {
+                    // Real places are drawn by the cluster layer
+                    mapDataManager.selectPlaceAt(location.getPosition());
                 }
 
                 // Animate camera to location
@@ -226,14 +250,14 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
                 return;
             }
 
-            // Observe real-time places data from Google Places API
-            mapDataManager.getPlaces().observe(getViewLifecycleOwner(), places -> {
+            // Observe the closest cached places, already ordered by distance in SQL
+            mapDataManager.getNearbyPlaces(MAX_NEARBY_PLACES).observe(getViewLifecycleOwner(), places -> {
                 try {
                     if (places != null && !places.isEmpty()) {
                         List<NearbyLocationAdapter.NearbyLocation> locations = new ArrayList<>();
 
-                        // Convert PlaceEntity to NearbyLocation
-                        for (PlaceEntity place : places) {
+                        // Convert PlaceSummary to NearbyLocation
+                        for (PlaceSummary place : places) {
                             if (place.latitude != 0 && place.longitude != 0) {
                                 LatLng position = new LatLng(place.latitude, place.longitude);
 
@@ -248,26 +272,24 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
                                         place.type != null ? place.type : "Place",
                                         distance,
                                         (float) rating,
-                                        position));
+                                        position,
+                                        place.googlePlaceId));
                             }
                         }
 
-                        // Sort by distance (closest first)
-                        locations.sort((a, b) -> Double.compare(a.getDistance(), b.getDistance()));
-
-                        // Limit to top 10 closest places
-                        if (locations.size() > 10) {
-                            locations = locations.subList(0, 10);
-                        }
-
                         // Update adapter
                         if (nearbyLocationAdapter != null) {
                             nearbyLocationAdapter.setLocations(locations);
+                            // The first cards are the likeliest to be opened next
+                            if (detailsPrefetcher != null) {
+                                detailsPrefetcher.prefetch(nearbyLocationAdapter.getGooglePlaceIds(
+                                        AppConfig.DETAILS_PREFETCH_COUNT));
+                            }
                         }
 
-                        // Add markers to map if map is ready
+                        // These places are already on the map through the cluster layer
                         if (mMap != null) {
-                            addMarkersForLocations(locations);
+                            clearLocationMarkers();
                         }
 
                         Log.d("HomeFragment", "Loaded " + locations.size() + " real nearby places");
@@ -356,24 +378,60 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
         return earthRadius * c;
     }
 
+    /**
+     * Raw markers for the sample locations, which are not stored places and so are not
+     * part of the cluster layer
+     */
     private void addMarkersForLocations(List<NearbyLocationAdapter.NearbyLocation> locations) {
-        // Clear existing markers from map
-        for (Marker marker : locationMarkers.values()) {
+        // Reconcile by location instead of rebuilding, so a repeated list touches no marker
+        HashMap<String, Marker> stale = new HashMap<>(locationMarkers);
+        locationMarkers.clear();
+        for (NearbyLocationAdapter.NearbyLocation location : locations) {
+            String key = locationKey(location);
+            String snippet = location.getType() + " • " + location.getDistance() + " km";
+            Marker marker = stale.remove(key);
+            if (marker == null) {
+                MarkerOptions markerOptions = new MarkerOptions()
+                        .position(location.getPosition())
+                        .title(location.getName())
+                        .snippet(snippet)
+                        .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED));
+                marker = mMap.addMarker(markerOptions);
+            } else {
+                if (!marker.getPosition().equals(location.getPosition())) {
+                    marker.setPosition(location.getPosition());
+                }
+                if (!location.getName().equals(marker.getTitle())) {
+                    marker.setTitle(location.getName());
+                }
+                if (!snippet.equals(marker.getSnippet())) {
+                    marker.setSnippet(snippet);
+                }
+            }
+            if (marker != null) {
+                locationMarkers.put(key, marker);
+            }
+        }
+        for (Marker marker : stale.values()) {
+            if (marker.equals(selectedMarker)) {
+                selectedMarker = null;
+            }
             marker.remove();
         }
-        locationMarkers.clear();
+    }
 
-        // Add markers for each location
-        for (NearbyLocationAdapter.NearbyLocation location : locations) {
-            MarkerOptions markerOptions = new MarkerOptions()
-                    .position(location.getPosition())
-                    .title(location.getName())
-                    .snippet(location.getType() + " • " + location.getDistance() + " km")
-                    .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED));
+    private static String locationKey(NearbyLocationAdapter.NearbyLocation location) {
+        String googlePlaceId = location.getGooglePlaceId();
+        return googlePlaceId != null && !googlePlaceId.isEmpty()
+                ? googlePlaceId : location.getName() + "@" + location.getPosition();
+    }
 
-            Marker marker = mMap.addMarker(markerOptions);
-            locationMarkers.put(location.getPosition(), marker);
+    private void clearLocationMarkers() {
+        for (Marker marker : locationMarkers.values()) {
+            marker.remove();
         }
+        locationMarkers.clear();
+        selectedMarker = null;
     }
 
     // Removed animation method since we have a simpler layout now
@@ -409,14 +467,13 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
             // Start observing places data
             mapDataManager.observePlaces(getViewLifecycleOwner());
 
-            // Set up marker click listener
-            mMap.setOnMarkerClickListener(marker -> {
-                PlaceEntity place = mapDataManager.getPlaceForMarker(marker);
-                if (place != null) {
-                    openPlaceDetails(place);
-                    return true; // Consume the event
-                }
-                return false; // Let default behavior happen
+            // Place markers belong to the cluster layer, which owns the map's marker clicks
+            mapDataManager.setOnPlaceClickListener(this::openPlaceDetails);
+
+            // Tapping a route dismisses it
+            mMap.setOnPolylineClickListener(polyline -> {
+                endNavigation();
+                Toast.makeText(requireContext(), "Route cleared", Toast.LENGTH_SHORT).show();
             });
 
         } catch (Exception e) {
@@ -441,6 +498,7 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == LOCATION_PERMISSION_REQUEST_CODE) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                locationPipeline.restart();
                 if (mMap != null) {
                     enableMyLocation();
                     getCurrentLocationAndLoadPlaces();
@@ -459,6 +517,8 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
     private void enableMyLocation() {
         if (mMap != null && ContextCompat.checkSelfPermission(requireContext(),
                 Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
+            // The blue dot follows the pipeline instead of requesting locations of its own
+            mMap.setLocationSource(locationPipeline);
             mMap.setMyLocationEnabled(true);
         }
     }
@@ -493,6 +553,7 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
 
                             // Update MapDataManager with current location and fetch Google Places
                             mapDataManager.updateLocation(userLocation);
+                            locationPipeline.setFetchCenter(userLocation);
 
                             Toast.makeText(requireContext(), "Loading quiet spaces near you...", Toast.LENGTH_SHORT)
                                     .show();
@@ -519,7 +580,7 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
                 });
     }
 
-    private void openPlaceDetails(PlaceEntity place) {
+    private void openPlaceDetails(PlaceSummary place) {
         Intent intent = new Intent(requireContext(), PlaceDetailsActivity.class);
         if (place.googlePlaceId != null && !place.googlePlaceId.isEmpty()) {
             intent.putExtra(PlaceDetailsActivity.EXTRA_GOOGLE_PLACE_ID, place.googlePlaceId);
@@ -542,11 +603,8 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
     }
 
     private void startNavigation(LatLng origin, LatLng dest, String destName) {
-        // Clear existing polylines
-        for (com.google.android.gms.maps.model.Polyline polyline : currentPolylines) {
-            polyline.remove();
-        }
-        currentPolylines.clear();
+        // Clear the existing route
+        endNavigation();
 
         if (directionsService == null) {
             directionsService = new GoogleDirectionsService();
@@ -554,75 +612,108 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
 
         Toast.makeText(requireContext(), "Calculating route to " + destName + "...", Toast.LENGTH_SHORT).show();
 
-        directionsService.getDirections(origin.latitude, origin.longitude, dest.latitude, dest.longitude,
+        if (directionsCall != null) {
+            directionsCall.cancel();
+        }
+
+        // Resolved here, as the routes are prepared off the main thread
+        final int fastestColor = ContextCompat.getColor(requireContext(), R.color.quiet_space_primary);
+        final int alternativeColor = ContextCompat.getColor(requireContext(), R.color.quiet_space_text_secondary);
+        final float density = getResources().getDisplayMetrics().density;
+        View mapView = getView();
+        final float mapWidthDp = (mapView != null ? mapView.getWidth() : getResources().getDisplayMetrics().widthPixels)
+                / density;
+        final float mapHeightDp = (mapView != null ? mapView.getHeight()
+                : getResources().getDisplayMetrics().heightPixels) / density;
+
+        directionsCall = directionsService.getDirections(origin.latitude, origin.longitude, dest.latitude, dest.longitude,
                 new GoogleDirectionsService.DirectionsCallback() {
                     @Override
                     public void onSuccess(List<GoogleDirectionsService.Route> routes) {
                         if (getActivity() == null)
                             return;
-                        getActivity().runOnUiThread(() -> {
-                            if (routes.isEmpty()) {
-                                Toast.makeText(requireContext(), "No routes found", Toast.LENGTH_SHORT).show();
-                                return;
+                        if (routes.isEmpty()) {
+                            getActivity().runOnUiThread(() -> Toast
+                                    .makeText(requireContext(), "No routes found", Toast.LENGTH_SHORT).show());
+                            return;
+                        }
+
+                        // Sort routes by duration (fastest first); the list is shared with the cache
+                        List<GoogleDirectionsService.Route> sorted = new ArrayList<>(routes);
+                        sorted.sort((r1, r2) -> {
+                            int d1 = 0, d2 = 0;
+                            if (!r1.legs.isEmpty())
+                                d1 = r1.legs.get(0).duration.value;
+                            if (!r2.legs.isEmpty())
+                                d2 = r2.legs.get(0).duration.value;
+                            return Integer.compare(d1, d2);
+                        });
+
+                        // Bounds come precomputed with each route
+                        com.google.android.gms.maps.model.LatLngBounds.Builder builder = com.google.android.gms.maps.model.LatLngBounds
+                                .builder().include(origin).include(dest);
+                        for (GoogleDirectionsService.Route route : sorted) {
+                            if (route.geometry != null) {
+                                builder.include(route.geometry.getBounds().southwest);
+                                builder.include(route.geometry.getBounds().northeast);
                             }
+                        }
+                        com.google.android.gms.maps.model.LatLngBounds bounds = builder.build();
+                        // Simplify for the zoom the camera will settle on after fitting the route
+                        int zoom = RouteGeometry.zoomToFit(bounds, mapWidthDp, mapHeightDp,
+                                ROUTE_PADDING_PX / density);
+
+                        // Alternative routes first (so they are drawn behind), the fastest last
+                        List<com.google.android.gms.maps.model.PolylineOptions> options = new ArrayList<>();
+                        for (int i = sorted.size() - 1; i >= 0; i--) {
+                            RouteGeometry geometry = sorted.get(i).geometry;
+                            if (geometry == null) {
+                                continue;
+                            }
+                            boolean isFastest = (i == 0);
+                            com.google.android.gms.maps.model.PolylineOptions polylineOptions = new com.google.android.gms.maps.model.PolylineOptions()
+                                    .addAll(geometry.simplifiedFor(zoom))
+                                    .width(isFastest ? 15 : 10)
+                                    .color(isFastest ? fastestColor : alternativeColor)
+                                    .geodesic(true);
+
+                            if (!isFastest) {
+                                polylineOptions
+                                        .pattern(Arrays.asList(new com.google.android.gms.maps.model.Dash(30),
+                                                new com.google.android.gms.maps.model.Gap(20)));
+                            }
+                            options.add(polylineOptions);
+                        }
+                        GoogleDirectionsService.Route fastest = sorted.get(0);
+                        boolean fastestDrawn = fastest.geometry != null;
+                        String duration = fastestDrawn && !fastest.legs.isEmpty()
+                                ? fastest.legs.get(0).duration.text : null;
 
-                            // Sort routes by duration (fastest first)
-                            routes.sort((r1, r2) -> {
-                                int d1 = 0, d2 = 0;
-                                if (!r1.legs.isEmpty())
-                                    d1 = r1.legs.get(0).duration.value;
-                                if (!r2.legs.isEmpty())
-                                    d2 = r2.legs.get(0).duration.value;
-                                return Integer.compare(d1, d2);
-                            });
-
-                            // Draw routes
-                            // Draw alternative routes first (so they are behind)
-                            for (int i = routes.size() - 1; i >= 0; i--) {
-                                GoogleDirectionsService.Route route = routes.get(i);
-                                boolean isFastest = (i == 0);
-
-                                List<LatLng> points = com.google.maps.android.PolyUtil
-                                        .decode(route.overviewPolyline.points);
-
-                                com.google.android.gms.maps.model.PolylineOptions polylineOptions = new com.google.android.gms.maps.model.PolylineOptions()
-                                        .addAll(points)
-                                        .width(isFastest ? 15 : 10)
-                                        .color(isFastest
-                                                ? ContextCompat.getColor(requireContext(), R.color.quiet_space_primary)
-                                                : ContextCompat.getColor(requireContext(),
-                                                        R.color.quiet_space_text_secondary))
-                                        .geodesic(true);
-
-                                if (!isFastest) {
-                                    polylineOptions
-                                            .pattern(Arrays.asList(new com.google.android.gms.maps.model.Dash(30),
-                                                    new com.google.android.gms.maps.model.Gap(20)));
-                                }
-
-                                com.google.android.gms.maps.model.Polyline polyline = mMap.addPolyline(polylineOptions);
+                        getActivity().runOnUiThread(() -> {
+                            if (mMap == null || !isAdded())
+                                return;
+                            for (int i = 0; i < options.size(); i++) {
+                                boolean isFastest = fastestDrawn && i == options.size() - 1;
+                                com.google.android.gms.maps.model.Polyline polyline = mMap.addPolyline(options.get(i));
                                 polyline.setTag(isFastest ? "fastest" : "alternative");
                                 polyline.setClickable(true);
                                 currentPolylines.add(polyline);
+                            }
+                            if (!currentPolylines.isEmpty()) {
+                                // Following a route needs GPS, until it is dismissed, reached or timed out
+                                navigationDestination = dest;
+                                locationPipeline.setNavigating(true);
+                                mainHandler.postDelayed(navigationTimeout, NAVIGATION_TIMEOUT_MS);
+                            }
 
-                                if (isFastest) {
-                                    // Show duration info
-                                    String duration = route.legs.get(0).duration.text;
-                                    Toast.makeText(requireContext(), "Fastest route: " + duration, Toast.LENGTH_LONG)
-                                            .show();
-                                }
+                            if (duration != null) {
+                                // Show duration info
+                                Toast.makeText(requireContext(), "Fastest route: " + duration, Toast.LENGTH_LONG)
+                                        .show();
                             }
 
                             // Zoom to fit route
-                            com.google.android.gms.maps.model.LatLngBounds.Builder builder = new com.google.android.gms.maps.model.LatLngBounds.Builder();
-                            builder.include(origin);
-                            builder.include(dest);
-                            for (com.google.android.gms.maps.model.Polyline polyline : currentPolylines) {
-                                for (LatLng point : polyline.getPoints()) {
-                                    builder.include(point);
-                                }
-                            }
-                            mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(builder.build(), 100));
+                            mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds, ROUTE_PADDING_PX));
                         });
                     }
 
@@ -635,7 +726,26 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
                                     .show();
                         });
                     }
-                });
+                }).bindTo(getViewLifecycleOwner());
+    }
+
+    /**
+     * Removes the route from the map and lets location updates fall back to balanced
+     */
+    private void endNavigation() {
+        mainHandler.removeCallbacks(navigationTimeout);
+        for (com.google.android.gms.maps.model.Polyline polyline : currentPolylines) {
+            polyline.remove();
+        }
+        currentPolylines.clear();
+        navigationDestination = null;
+        locationPipeline.setNavigating(false);
+    }
+
+    private static float distanceMeters(LatLng from, LatLng to) {
+        float[] results = new float[1];
+        Location.distanceBetween(from.latitude, from.longitude, to.latitude, to.longitude, results);
+        return results[0];
     }
 
     private void updateCurrentLocationMarker(LatLng location) {
@@ -655,26 +765,40 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
-        startLocationUpdates();
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (mapDataManager != null) {
+            mapDataManager.cleanup();
+        }
+        // Markers and polylines die with the map view
+        locationMarkers.clear();
+        selectedMarker = null;
+        currentLocationMarker = null;
+        currentPolylines.clear();
+        navigationDestination = null;
+        mainHandler.removeCallbacks(navigationTimeout);
+        locationPipeline.setNavigating(false);
+        // The map's location layer goes with it
+        locationPipeline.deactivate();
+        mMap = null;
     }
 
     @Override
-    public void onPause() {
-        super.onPause();
-        stopLocationUpdates();
+    public void onResume() {
+        super.onResume();
+        locationPipeline.setMapVisible(!isHidden());
     }
 
-    private void startLocationUpdates() {
-        if (ContextCompat.checkSelfPermission(requireContext(),
-                Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback,
-                    android.os.Looper.getMainLooper());
-        }
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        // Tabs are switched with hide() and show(), which do not pause this fragment
+        locationPipeline.setMapVisible(!hidden && isResumed());
     }
 
-    private void stopLocationUpdates() {
-        fusedLocationClient.removeLocationUpdates(locationCallback);
+    @Override
+    public void onPause() {
+        super.onPause();
+        locationPipeline.setMapVisible(false);
     }
 }
@@ -109,8 +109,8 @@ public class MainActivity extends AppCompatActivity {
         // Use waitForSessionAndCheck to handle async session restoration on startup
         authHelper.waitForSessionAndCheck(isLoggedIn -> {
             if (isLoggedIn) {
-                ca.gbc.comp3074.uiprototype.data.PlaceRepository repository = new ca.gbc.comp3074.uiprototype.data.PlaceRepository(
-                        getApplication());
+                ca.gbc.comp3074.uiprototype.data.PlaceRepository repository = ca.gbc.comp3074.uiprototype.data.PlaceRepository
+                        .getInstance(getApplication());
                 repository.syncFavoritesFromCloud();
                 android.util.Log.d("MainActivity", "Triggered favorites sync on startup");
             } else {
@@ -56,6 +56,22 @@ public class NearbyLocationAdapter extends RecyclerView.Adapter<NearbyLocationAd
         notifyDataSetChanged();
     }
 
+    /**
+     * Google ids of the first count locations that have one, in list order
+     */
+    public List<String> getGooglePlaceIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (NearbyLocation location : locations) {
+            if (ids.size() >= count) {
+                break;
+            }
+            if (location.getGooglePlaceId() != null) {
+                ids.add(location.getGooglePlaceId());
+            }
+        }
+        return ids;
+    }
+
     class LocationViewHolder extends RecyclerView.ViewHolder {
         private final CardView cardLocation;
         private final TextView tvLocationName;
@@ -95,13 +111,20 @@ public class NearbyLocationAdapter extends RecyclerView.Adapter<NearbyLocationAd
         private double distance;
         private double rating;
         private LatLng position;
+        private String googlePlaceId;
 
         public NearbyLocation(String name, String type, double distance, double rating, LatLng position) {
+            this(name, type, distance, rating, position, null);
+        }
+
+        public NearbyLocation(String name, String type, double distance, double rating, LatLng position,
+                String googlePlaceId) {
             this.name = name;
             this.type = type;
             this.distance = distance;
             this.rating = rating;
             this.position = position;
+            this.googlePlaceId = googlePlaceId;
         }
 
         public String getName() {
@@ -123,5 +146,9 @@ public class NearbyLocationAdapter extends RecyclerView.Adapter<NearbyLocationAd
         public LatLng getPosition() {
             return position;
         }
+
+        public String getGooglePlaceId() {
+            return googlePlaceId;
+        }
     }
 }
@@ -29,6 +29,7 @@ import java.util.Locale;
 
 import ca.gbc.comp3074.uiprototype.R;
 import ca.gbc.comp3074.uiprototype.data.PlaceEntity;
+import ca.gbc.comp3074.uiprototype.data.PlaceSummary;
 import ca.gbc.comp3074.uiprototype.ui.details.PlaceDetailsActivity;
 import ca.gbc.comp3074.uiprototype.utils.AppConfig;
 
@@ -189,20 +190,6 @@ public class SearchFragment extends Fragment {
             }
         });
 
-        // Observe error message
-        viewModel.getErrorMessage().observe(getViewLifecycleOwner(), error -> {
-            if (error != null) {
-                // Fallback to local search
-                String query = viewModel.getSearchQuery().getValue();
-                if (query != null) {
-                    List<Place> matches = filterPlaces(query);
-                    renderPlaces(matches,
-                            getString(R.string.search_results_title, query, matches.size()),
-                            true);
-                }
-            }
-        });
-
         viewModel.getAllPlaces().observe(getViewLifecycleOwner(), placeEntities -> {
             // Update places from database when available
             if (placeEntities != null && !placeEntities.isEmpty()) {
@@ -316,27 +303,12 @@ public class SearchFragment extends Fragment {
         }
     }
 
-    private List<Place> filterPlaces(String query) {
-        final String lower = query.toLowerCase(Locale.getDefault());
-        List<Place> filtered = new ArrayList<>();
-        for (Place place : places) {
-            boolean matchesName = place.name.toLowerCase(Locale.getDefault()).contains(lower);
-            boolean matchesType = place.type.toLowerCase(Locale.getDefault()).contains(lower);
-            boolean matchesTag = place.tags.stream()
-                    .anyMatch(tag -> tag.toLowerCase(Locale.getDefault()).contains(lower));
-            if (matchesName || matchesType || matchesTag) {
-                filtered.add(place);
-            }
-        }
-        return filtered;
-    }
-
-    private void updatePlaces(List<PlaceEntity> placeEntities) {
+    private void updatePlaces(List<PlaceSummary> placeEntities) {
         places.clear();
         if (placeEntities == null) {
             return;
         }
-        for (PlaceEntity entity : placeEntities) {
+        for (PlaceSummary entity : placeEntities) {
             places.add(new Place(
                     entity.name,
                     entity.type,
@@ -442,7 +414,7 @@ public class SearchFragment extends Fragment {
                                     android.widget.Toast.LENGTH_SHORT).show();
                         });
                     }
-                });
+                }).bindTo(getViewLifecycleOwner());
     }
 
     private String calculateDistance(double lat, double lng) {
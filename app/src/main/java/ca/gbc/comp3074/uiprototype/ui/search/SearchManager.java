@@ -3,6 +3,7 @@ package ca.gbc.comp3074.uiprototype.ui.search;
 import android.content.Context;
 import android.util.Log;
 
+import ca.gbc.comp3074.uiprototype.api.CallHandle;
 import ca.gbc.comp3074.uiprototype.api.GooglePlacesService;
 import ca.gbc.comp3074.uiprototype.data.PlaceDataConverter;
 import ca.gbc.comp3074.uiprototype.data.PlaceEntity;
@@ -18,6 +19,8 @@ public class SearchManager {
     
     private final GooglePlacesService placesService;
     private final Context context;
+    // The latest search; starting another one cancels it
+    private CallHandle currentSearch;
 
     public SearchManager(Context context) {
         this.context = context;
@@ -30,13 +33,14 @@ public class SearchManager {
     }
 
     /**
-     * Search for places by text query
+     * Search for places by text query; supersedes any search still running
      */
-    public void searchByText(String query, double latitude, double longitude, SearchCallback callback) {
+    public CallHandle searchByText(String query, double latitude, double longitude, SearchCallback callback) {
         // For text search, we'll search across different categories that match the query
         String searchType = determineSearchType(query);
         
-        placesService.searchPlacesByType(latitude, longitude, 10000, searchType, new GooglePlacesService.PlacesCallback() {
+        cancel();
+        currentSearch = placesService.searchPlacesByType(latitude, longitude, 10000, searchType, new GooglePlacesService.PlacesCallback() {
             @Override
             public void onSuccess(List<GooglePlacesService.GooglePlace> places) {
                 List<PlaceEntity> entities = PlaceDataConverter.convertGooglePlacesToEntities(places);
@@ -52,15 +56,17 @@ public class SearchManager {
                 callback.onSearchError(error);
             }
         });
+        return currentSearch;
     }
 
     /**
-     * Search for places by category
+     * Search for places by category; supersedes any search still running
      */
-    public void searchByCategory(String category, double latitude, double longitude, SearchCallback callback) {
+    public CallHandle searchByCategory(String category, double latitude, double longitude, SearchCallback callback) {
         String googlePlaceType = mapCategoryToGoogleType(category);
         
-        placesService.searchPlacesByType(latitude, longitude, 10000, googlePlaceType, new GooglePlacesService.PlacesCallback() {
+        cancel();
+        currentSearch = placesService.searchPlacesByType(latitude, longitude, 10000, googlePlaceType, new GooglePlacesService.PlacesCallback() {
             @Override
             public void onSuccess(List<GooglePlacesService.GooglePlace> places) {
                 List<PlaceEntity> entities = PlaceDataConverter.convertGooglePlacesToEntities(places);
@@ -73,6 +79,17 @@ public class SearchManager {
                 callback.onSearchError(error);
             }
         });
+        return currentSearch;
+    }
+
+    /**
+     * Cancels the search still running, if any; its callback will not be called
+     */
+    public void cancel() {
+        CallHandle search = currentSearch;
+        if (search != null) {
+            search.cancel();
+        }
     }
 
     /**
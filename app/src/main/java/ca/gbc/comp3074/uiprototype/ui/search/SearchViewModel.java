@@ -10,11 +10,15 @@ import java.util.List;
 
 import ca.gbc.comp3074.uiprototype.data.PlaceEntity;
 import ca.gbc.comp3074.uiprototype.data.PlaceRepository;
+import ca.gbc.comp3074.uiprototype.data.PlaceSummary;
 
 public class SearchViewModel extends AndroidViewModel {
 
+    private static final int LOCAL_SEARCH_LIMIT = 50;
+    private static final int FEATURED_LIMIT = 4;
+
     private final PlaceRepository repository;
-    private final LiveData<List<PlaceEntity>> allPlaces;
+    private final LiveData<List<PlaceSummary>> allPlaces;
     private final SearchManager searchManager;
 
     private final androidx.lifecycle.MutableLiveData<String> searchQuery = new androidx.lifecycle.MutableLiveData<>();
@@ -25,12 +29,13 @@ public class SearchViewModel extends AndroidViewModel {
 
     public SearchViewModel(@NonNull Application application) {
         super(application);
-        repository = new PlaceRepository(application);
-        allPlaces = repository.getAllPlaces();
+        repository = PlaceRepository.getInstance(application);
+        // Only the featured cards are shown from the cache, so read just those rows
+        allPlaces = repository.getTopPlaces(FEATURED_LIMIT);
         searchManager = new SearchManager(application);
     }
 
-    public LiveData<List<PlaceEntity>> getAllPlaces() {
+    public LiveData<List<PlaceSummary>> getAllPlaces() {
         return allPlaces;
     }
 
@@ -54,6 +59,8 @@ public class SearchViewModel extends AndroidViewModel {
         searchQuery.setValue(query);
 
         if (query == null || query.trim().isEmpty()) {
+            searchManager.cancel();
+            isLoading.setValue(false);
             searchResults.setValue(null);
             return;
         }
@@ -70,9 +77,18 @@ public class SearchViewModel extends AndroidViewModel {
 
             @Override
             public void onSearchError(String error) {
-                isLoading.postValue(false);
-                errorMessage.postValue(error);
+                // Fall back to the offline full-text index over cached places
+                repository.searchPlacesAsync(query, LOCAL_SEARCH_LIMIT).whenComplete((places, e) -> {
+                    isLoading.postValue(false);
+                    errorMessage.postValue(error);
+                    searchResults.postValue(places);
+                });
             }
         });
     }
+
+    @Override
+    protected void onCleared() {
+        searchManager.cancel();
+    }
 }
@@ -16,6 +16,25 @@ public class AppConfig {
     public static final int DEFAULT_SEARCH_RADIUS_METERS = 5000; // 5km
     public static final int MAX_SEARCH_RESULTS = 20;
     
+    // Cache settings: how long each kind of Google data is served without revalidating
+    public static final long NEARBY_CACHE_TTL_MS = 24L * 60 * 60 * 1000;      // 1 day
+    public static final long DETAILS_CACHE_TTL_MS = 7L * 24 * 60 * 60 * 1000; // 1 week
+    public static final long HOURS_CACHE_TTL_MS = 60L * 60 * 1000;            // 1 hour, open/closed changes
+    public static final long REVIEWS_CACHE_TTL_MS = 3L * 24 * 60 * 60 * 1000; // 3 days
+    public static final long DIRECTIONS_CACHE_TTL_MS = 15L * 60 * 1000;       // 15 minutes
+    // Details prefetched for the first entries of the nearby list, on unmetered networks only
+    public static final int DETAILS_PREFETCH_COUNT = 5;
+
+    // Requests per Google quota day the app allows itself per endpoint, well under the
+    // project quota so one heavy user cannot exhaust it for everyone
+    public static final int NEARBY_DAILY_REQUEST_BUDGET = 1000;
+    public static final int DETAILS_DAILY_REQUEST_BUDGET = 500;
+    public static final int DIRECTIONS_DAILY_REQUEST_BUDGET = 200;
+    // Moving further than this from the last nearby search center triggers a new search
+    public static final float NEARBY_REFETCH_DISTANCE_METERS = 1000f;
+    // Location updates reach the map's data layer only after moving this far from the last fetch center
+    public static final float LOCATION_REFRESH_DISTANCE_METERS = NEARBY_REFETCH_DISTANCE_METERS;
+
     // Map settings
     public static final float DEFAULT_ZOOM_LEVEL = 12.0f;
     public static final float USER_LOCATION_ZOOM_LEVEL = 14.0f;
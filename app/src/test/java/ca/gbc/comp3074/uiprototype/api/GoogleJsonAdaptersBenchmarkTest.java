@@ -0,0 +1,213 @@
+package ca.gbc.comp3074.uiprototype.api;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import ca.gbc.comp3074.uiprototype.api.GoogleDirectionsService.DirectionsResponse;
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService.PlaceDetailsResponse;
+import ca.gbc.comp3074.uiprototype.api.GooglePlacesService.PlacesResponse;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the streaming adapters with the previous decoding path
+ * (body().string() then reflective Gson) on fixture payloads shaped like real
+ * nearbysearch, details and walking directions responses.
+ *
+ * Only the allocation drop is measured and asserted, since timings on a shared build
+ * machine are too noisy to gate on.
+ */
+public class GoogleJsonAdaptersBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 300;
+    private static final int MEASURED_ITERATIONS = 500;
+
+    private final Gson reflectiveGson = new Gson();
+
+    @Test
+    public void nearbySearch_decodesSameAsReflection() throws IOException {
+        byte[] json = fixture("nearbysearch_library.json");
+        PlacesResponse expected = decodeReflective(json, PlacesResponse.class);
+        PlacesResponse actual = decodeStreaming(json, GoogleJsonAdapters.PLACES_RESPONSE);
+
+        assertEquals(expected.status, actual.status);
+        assertEquals(expected.nextPageToken, actual.nextPageToken);
+        assertEquals(expected.results.size(), actual.results.size());
+        for (int i = 0; i < expected.results.size(); i++) {
+            GooglePlacesService.GooglePlace e = expected.results.get(i);
+            GooglePlacesService.GooglePlace a = actual.results.get(i);
+            assertEquals(e.placeId, a.placeId);
+            assertEquals(e.name, a.name);
+            assertEquals(e.vicinity, a.vicinity);
+            assertEquals(e.rating, a.rating, 0f);
+            assertEquals(e.userRatingsTotal, a.userRatingsTotal);
+            assertEquals(e.priceLevel, a.priceLevel);
+            assertEquals(e.types, a.types);
+            assertEquals(e.geometry.location.lat, a.geometry.location.lat, 0d);
+            assertEquals(e.geometry.location.lng, a.geometry.location.lng, 0d);
+            assertEquals(e.openingHours.openNow, a.openingHours.openNow);
+            assertEquals(e.photos.get(0).photoReference, a.photos.get(0).photoReference);
+        }
+    }
+
+    @Test
+    public void placeDetails_decodesSameAsReflection() throws IOException {
+        byte[] json = fixture("place_details.json");
+        GooglePlacesService.GooglePlaceDetails expected =
+                decodeReflective(json, PlaceDetailsResponse.class).result;
+        GooglePlacesService.GooglePlaceDetails actual =
+                decodeStreaming(json, GoogleJsonAdapters.PLACE_DETAILS_RESPONSE).result;
+
+        assertEquals(expected.placeId, actual.placeId);
+        assertEquals(expected.formattedAddress, actual.formattedAddress);
+        assertEquals(expected.formattedPhoneNumber, actual.formattedPhoneNumber);
+        assertEquals(expected.priceLevel, actual.priceLevel);
+        assertEquals(expected.openingHours.weekdayText, actual.openingHours.weekdayText);
+        assertEquals(expected.openingHours.periods.size(), actual.openingHours.periods.size());
+        assertEquals(expected.openingHours.periods.get(6).close.time, actual.openingHours.periods.get(6).close.time);
+        assertEquals(expected.reviews.size(), actual.reviews.size());
+        for (int i = 0; i < expected.reviews.size(); i++) {
+            assertEquals(expected.reviews.get(i).text, actual.reviews.get(i).text);
+            assertEquals(expected.reviews.get(i).rating, actual.reviews.get(i).rating);
+            assertEquals(expected.reviews.get(i).time, actual.reviews.get(i).time);
+        }
+        assertEquals(expected.photos.size(), actual.photos.size());
+    }
+
+    @Test
+    public void directions_decodesSameAsReflection() throws IOException {
+        byte[] json = fixture("directions_walking.json");
+        DirectionsResponse expected = decodeReflective(json, DirectionsResponse.class);
+        DirectionsResponse actual = decodeStreaming(json, GoogleJsonAdapters.DIRECTIONS_RESPONSE);
+
+        assertEquals(expected.status, actual.status);
+        assertEquals(expected.routes.size(), actual.routes.size());
+        for (int i = 0; i < expected.routes.size(); i++) {
+            GoogleDirectionsService.Route e = expected.routes.get(i);
+            GoogleDirectionsService.Route a = actual.routes.get(i);
+            assertEquals(e.summary, a.summary);
+            assertEquals(e.overviewPolyline.points, a.overviewPolyline.points);
+            assertEquals(e.legs.get(0).distance.value, a.legs.get(0).distance.value);
+            assertEquals(e.legs.get(0).duration.text, a.legs.get(0).duration.text);
+        }
+    }
+
+    @Test
+    public void nearbySearch_readsBackWhatItWrites() throws IOException {
+        // The nearby tile cache stores results with the same adapter it reads them with
+        PlacesResponse original = decodeStreaming(fixture("nearbysearch_library.json"),
+                GoogleJsonAdapters.PLACES_RESPONSE);
+        StringWriter written = new StringWriter();
+        GoogleJsonAdapters.encode(written, GoogleJsonAdapters.PLACES_RESPONSE, original);
+        PlacesResponse copy = GoogleJsonAdapters.decode(new StringReader(written.toString()),
+                GoogleJsonAdapters.PLACES_RESPONSE);
+
+        assertEquals(original.status, copy.status);
+        assertEquals(original.nextPageToken, copy.nextPageToken);
+        assertEquals(original.results.size(), copy.results.size());
+        for (int i = 0; i < original.results.size(); i++) {
+            GooglePlacesService.GooglePlace e = original.results.get(i);
+            GooglePlacesService.GooglePlace a = copy.results.get(i);
+            assertEquals(e.placeId, a.placeId);
+            assertEquals(e.name, a.name);
+            assertEquals(e.vicinity, a.vicinity);
+            assertEquals(e.rating, a.rating, 0f);
+            assertEquals(e.userRatingsTotal, a.userRatingsTotal);
+            assertEquals(e.priceLevel, a.priceLevel);
+            assertEquals(e.types, a.types);
+            assertEquals(e.geometry.location.lat, a.geometry.location.lat, 0d);
+            assertEquals(e.geometry.location.lng, a.geometry.location.lng, 0d);
+            assertEquals(e.openingHours.openNow, a.openingHours.openNow);
+            assertEquals(e.photos.get(0).photoReference, a.photos.get(0).photoReference);
+        }
+    }
+
+    @Test
+    public void benchmark_streamingAllocatesLessThanStringAndReflection() throws IOException {
+        assertAllocatesLess("nearbysearch_library.json", PlacesResponse.class, GoogleJsonAdapters.PLACES_RESPONSE);
+        assertAllocatesLess("place_details.json", PlaceDetailsResponse.class,
+                GoogleJsonAdapters.PLACE_DETAILS_RESPONSE);
+        assertAllocatesLess("directions_walking.json", DirectionsResponse.class,
+                GoogleJsonAdapters.DIRECTIONS_RESPONSE);
+    }
+
+    private <T> void assertAllocatesLess(String name, Class<T> type, TypeAdapter<T> adapter) throws IOException {
+        byte[] json = fixture(name);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            decodeReflective(json, type);
+            decodeStreaming(json, adapter);
+        }
+
+        long reflectiveAlloc = allocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            decodeReflective(json, type);
+        }
+        reflectiveAlloc = allocatedBytes() - reflectiveAlloc;
+
+        long streamingAlloc = allocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            decodeStreaming(json, adapter);
+        }
+        streamingAlloc = allocatedBytes() - streamingAlloc;
+
+        if (reflectiveAlloc > 0) {
+            assertTrue(name + ": streaming should allocate less per decode",
+                    streamingAlloc < reflectiveAlloc);
+        }
+    }
+
+    /**
+     * The old path: OkHttp's body().string(), then Gson reflection over the String
+     */
+    private <T> T decodeReflective(byte[] json, Class<T> type) {
+        return reflectiveGson.fromJson(new String(json, StandardCharsets.UTF_8), type);
+    }
+
+    /**
+     * The new path: a Reader over the body bytes, like ResponseBody.charStream()
+     */
+    private static <T> T decodeStreaming(byte[] json, TypeAdapter<T> adapter) throws IOException {
+        return GoogleJsonAdapters.decode(
+                new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), adapter);
+    }
+
+    /**
+     * Bytes allocated by this thread so far, or 0 when the JVM does not report it
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = GoogleJsonAdaptersBenchmarkTest.class.getResourceAsStream("/fixtures/" + name)) {
+            assertNotNull("Missing fixture " + name, in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}